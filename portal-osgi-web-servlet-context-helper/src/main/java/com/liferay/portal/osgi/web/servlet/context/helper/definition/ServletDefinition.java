@@ -42,14 +42,46 @@ public class ServletDefinition {
 		return _jspFile;
 	}
 
+	public int getLoadOnStartup() {
+		return _loadOnStartup;
+	}
+
 	public String getName() {
 		return _name;
 	}
 
-	public Servlet getServlet() {
+	/**
+	 * Returns the servlet instance. A servlet declared with a
+	 * <code>servlet-class</code> in <code>web.xml</code> or
+	 * <code>web-fragment.xml</code> is instantiated from {@link
+	 * #getServletClass()} the first time this method is called.
+	 *
+	 * @throws IllegalStateException if the servlet class could not be
+	 *         instantiated
+	 */
+	public synchronized Servlet getServlet() {
+		if ((_servlet == null) && (_servletClass != null)) {
+			try {
+				_servlet = _servletClass.newInstance();
+			}
+			catch (ReflectiveOperationException roe) {
+				throw new IllegalStateException(
+					"Unable to instantiate servlet " + _servletClass.getName(),
+					roe);
+			}
+		}
+
 		return _servlet;
 	}
 
+	public Class<? extends Servlet> getServletClass() {
+		return _servletClass;
+	}
+
+	public String getServletClassName() {
+		return _servletClassName;
+	}
+
 	public List<String> getURLPatterns() {
 		return _urlPatterns;
 	}
@@ -78,14 +110,26 @@ public class ServletDefinition {
 		_jspFile = jspFile;
 	}
 
+	public void setLoadOnStartup(int loadOnStartup) {
+		_loadOnStartup = loadOnStartup;
+	}
+
 	public void setName(String name) {
 		_name = name;
 	}
 
-	public void setServlet(Servlet servlet) {
+	public synchronized void setServlet(Servlet servlet) {
 		_servlet = servlet;
 	}
 
+	public void setServletClass(Class<? extends Servlet> servletClass) {
+		_servletClass = servletClass;
+	}
+
+	public void setServletClassName(String servletClassName) {
+		_servletClassName = servletClassName;
+	}
+
 	public void setURLPatterns(List<String> urlPatterns) {
 		_urlPatterns = urlPatterns;
 	}
@@ -94,8 +138,11 @@ public class ServletDefinition {
 	private final List<String> _errorPages = new ArrayList<>();
 	private Map<String, String> _initParameters = new HashMap<>();
 	private String _jspFile;
+	private int _loadOnStartup = -1;
 	private String _name;
 	private Servlet _servlet;
+	private Class<? extends Servlet> _servletClass;
+	private String _servletClassName;
 	private List<String> _urlPatterns = new ArrayList<>();
 
 }
\ No newline at end of file
@@ -37,6 +37,8 @@ public class JspServletWrapper extends HttpServlet {
 
 	public JspServletWrapper(String jspFile) {
 		this.jspFile = jspFile;
+
+		_servlet = new JspServlet(jspFile);
 	}
 
 	@Override
@@ -59,23 +61,11 @@ public class JspServletWrapper extends HttpServlet {
 			ServletRequest servletRequest, ServletResponse servletResponse)
 		throws IOException, ServletException {
 
-		String curJspFile = (String)servletRequest.getAttribute(
-			JspServlet.JSP_FILE);
-
-		if (jspFile != null) {
-			servletRequest.setAttribute(JspServlet.JSP_FILE, jspFile);
-		}
-
-		try {
-			_servlet.service(servletRequest, servletResponse);
-		}
-		finally {
-			servletRequest.setAttribute(JspServlet.JSP_FILE, curJspFile);
-		}
+		_servlet.service(servletRequest, servletResponse);
 	}
 
 	protected String jspFile;
 
-	private final Servlet _servlet = new JspServlet();
+	private final Servlet _servlet;
 
 }
\ No newline at end of file
@@ -246,6 +246,12 @@ public class WebXMLDefinitionLoader extends DefaultHandler {
 
 			_listenerDefinition.setEventListener(eventListener);
 		}
+		else if (qName.equals("load-on-startup")) {
+			String loadOnStartup = String.valueOf(_stack.pop());
+
+			_servletDefinition.setLoadOnStartup(
+				GetterUtil.getInteger(loadOnStartup.trim()));
+		}
 		else if (qName.equals("name")) {
 			String name = String.valueOf(_stack.pop());
 
@@ -341,9 +347,11 @@ public class WebXMLDefinitionLoader extends DefaultHandler {
 		else if (qName.equals("servlet-class")) {
 			String servletClassName = String.valueOf(_stack.pop());
 
-			Servlet servlet = _getServletInstance(servletClassName.trim());
+			servletClassName = servletClassName.trim();
 
-			_servletDefinition.setServlet(servlet);
+			_servletDefinition.setServletClass(
+				_getServletClass(servletClassName));
+			_servletDefinition.setServletClassName(servletClassName);
 		}
 		else if (qName.equals("servlet-mapping")) {
 			Map<String, ServletDefinition> servletDefinitions =
@@ -882,14 +890,13 @@ public class WebXMLDefinitionLoader extends DefaultHandler {
 		}
 	}
 
-	private Servlet _getServletInstance(String servletClassName) {
+	private Class<? extends Servlet> _getServletClass(
+		String servletClassName) {
+
 		try {
 			Class<?> clazz = _bundle.loadClass(servletClassName);
 
-			Class<? extends Servlet> servletClass = clazz.asSubclass(
-				Servlet.class);
-
-			return servletClass.newInstance();
+			return clazz.asSubclass(Servlet.class);
 		}
 		catch (Exception e) {
 			_logger.log(
@@ -903,9 +910,9 @@ public class WebXMLDefinitionLoader extends DefaultHandler {
 	private static final String[] _LEAVES = new String[] {
 		"async-supported", "dispatcher", "error-code", "exception-type",
 		"filter-class", "filter-name", "http-method", "http-method-exception",
-		"jsp-file", "listener-class", "location", "name", "param-name",
-		"param-value", "servlet-class", "servlet-name", "taglib-location",
-		"taglib-uri", "url-pattern", "web-resource-name"
+		"jsp-file", "listener-class", "load-on-startup", "location", "name",
+		"param-name", "param-value", "servlet-class", "servlet-name",
+		"taglib-location", "taglib-uri", "url-pattern", "web-resource-name"
 	};
 
 	private List<String> _absoluteOrderingNames;
@@ -96,6 +96,15 @@ public class ServletDefinitionTest {
 		}
 	}
 
+	@Test
+	public void testSetLoadOnStartup() {
+		Assert.assertEquals(-1, _servletDefinition.getLoadOnStartup());
+
+		_servletDefinition.setLoadOnStartup(1);
+
+		Assert.assertEquals(1, _servletDefinition.getLoadOnStartup());
+	}
+
 	@Test
 	public void testSetServlet() {
 		_servletDefinition.setServlet(_servlet);
@@ -103,6 +112,26 @@ public class ServletDefinitionTest {
 		Assert.assertEquals(_servlet, _servletDefinition.getServlet());
 	}
 
+	@Test
+	public void testSetServletClass() {
+		_servletDefinition.setServletClass(MockServlet.class);
+
+		Servlet servlet = _servletDefinition.getServlet();
+
+		Assert.assertTrue(servlet instanceof MockServlet);
+		Assert.assertSame(servlet, _servletDefinition.getServlet());
+	}
+
+	@Test
+	public void testSetServletClassName() {
+		String servletClassName = "com.liferay.ModuleServlet";
+
+		_servletDefinition.setServletClassName(servletClassName);
+
+		Assert.assertEquals(
+			servletClassName, _servletDefinition.getServletClassName());
+	}
+
 	@Test
 	public void testSetServletName() {
 		String servletName = "Module Servlet";
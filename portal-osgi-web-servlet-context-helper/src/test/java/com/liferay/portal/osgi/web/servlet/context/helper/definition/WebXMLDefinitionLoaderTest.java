@@ -126,6 +126,27 @@ public class WebXMLDefinitionLoaderTest {
 		testWebXMLDefinition(webXMLDefinition, 1, 1, 1);
 	}
 
+	@Test
+	public void testLoadCustomWebXMLLoadOnStartup() throws Exception {
+		WebXMLDefinition webXMLDefinition = loadWebXMLDefinition(
+			"dependencies/custom-web.xml");
+
+		Map<String, ServletDefinition> servletDefinitions =
+			webXMLDefinition.getServletDefinitions();
+
+		ServletDefinition servletDefinition = servletDefinitions.get(
+			"Mock Servlet");
+
+		Assert.assertEquals(0, servletDefinition.getLoadOnStartup());
+		Assert.assertEquals(
+			MockServlet.class, servletDefinition.getServletClass());
+		Assert.assertEquals(
+			MockServlet.class.getName(),
+			servletDefinition.getServletClassName());
+		Assert.assertTrue(
+			servletDefinition.getServlet() instanceof MockServlet);
+	}
+
 	@Test
 	public void testLoadCustomWebXMLMetadataComplete() throws Exception {
 		WebXMLDefinition webXMLDefinition = loadWebXMLDefinition(
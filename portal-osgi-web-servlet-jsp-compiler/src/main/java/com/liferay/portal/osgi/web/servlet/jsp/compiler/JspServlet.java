@@ -14,19 +14,29 @@
 
 package com.liferay.portal.osgi.web.servlet.jsp.compiler;
 
+import com.liferay.portal.kernel.util.GetterUtil;
 import com.liferay.portal.kernel.util.PropsKeys;
 import com.liferay.portal.kernel.util.PropsUtil;
+import com.liferay.portal.kernel.util.ReflectionUtil;
 import com.liferay.portal.kernel.util.StringBundler;
 import com.liferay.portal.kernel.util.StringPool;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspAccessLog;
 import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspBundleClassloader;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspCompiler;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspExpressionFactory;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspFragmentListener;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspFragmentTracker;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspPrecompiledClassInstaller;
 import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspServletContext;
 import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspTagHandlerPool;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.JspWarmUp;
 import com.liferay.taglib.servlet.JspFactorySwapper;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -43,9 +53,9 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -54,10 +64,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.el.ExpressionFactory;
+
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -73,16 +89,20 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSessionAttributeListener;
 import javax.servlet.http.HttpSessionListener;
+import javax.servlet.jsp.JspApplicationContext;
 import javax.servlet.jsp.JspFactory;
 
 import org.apache.felix.utils.log.Logger;
+import org.apache.jasper.Constants;
+import org.apache.jasper.compiler.JspRuntimeContext;
+import org.apache.jasper.runtime.JspApplicationContextImpl;
 import org.apache.jasper.runtime.JspFactoryImpl;
 import org.apache.jasper.runtime.TagHandlerPool;
+import org.apache.jasper.servlet.JspServletWrapper;
 import org.apache.jasper.xmlparser.ParserUtils;
 import org.apache.jasper.xmlparser.TreeNode;
 
 import org.osgi.framework.Bundle;
-import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleReference;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceRegistration;
@@ -90,15 +110,13 @@ import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRevision;
 import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
-import org.osgi.util.tracker.BundleTracker;
-import org.osgi.util.tracker.BundleTrackerCustomizer;
 
 /**
  * @author Raymond Augé
  */
 public class JspServlet extends HttpServlet {
 
-	public static final String JSP_FILE = org.apache.jasper.Constants.JSP_FILE;
+	public static final String JSP_FILE = Constants.JSP_FILE;
 
 	public static void scanTLDs(
 		Bundle bundle, ServletContext servletContext,
@@ -162,8 +180,43 @@ public class JspServlet extends HttpServlet {
 		}
 	}
 
+	public JspServlet() {
+		this(null);
+	}
+
+	/**
+	 * Creates a servlet for a <code>jsp-file</code> servlet declaration. After
+	 * the first request the page is invoked directly, without resolving its
+	 * path on every request, until a fragment of the bundle changes.
+	 */
+	public JspServlet(String jspFile) {
+		_jspFile = jspFile;
+	}
+
 	@Override
 	public void destroy() {
+		_unbindJspServletWrapper();
+
+		if (_jspAccessLog != null) {
+			if (_jspWarmUp != null) {
+				_jspWarmUp.cancel();
+			}
+
+			_storeFuture.cancel(false);
+
+			_storeJspAccessLog();
+		}
+
+		synchronized (this) {
+			_destroyed = true;
+
+			if (!_initialized) {
+				return;
+			}
+
+			_initialized = false;
+		}
+
 		_jspServlet.destroy();
 
 		for (ServiceRegistration<?> serviceRegistration :
@@ -174,7 +227,14 @@ public class JspServlet extends HttpServlet {
 
 		_serviceRegistrations.clear();
 
-		_bundleTracker.close();
+		_jspFragmentTracker.unregister(
+			_bundle.getSymbolicName(), _jspFragmentListener);
+
+		_logger.log(
+			Logger.LOG_DEBUG,
+			"EL expression cache statistics: " +
+				JspExpressionFactory.getHitCount() + " hits, " +
+					JspExpressionFactory.getMissCount() + " misses");
 	}
 
 	@Override
@@ -184,22 +244,22 @@ public class JspServlet extends HttpServlet {
 
 	@Override
 	public String getInitParameter(String name) {
-		return _jspServlet.getInitParameter(name);
+		return _jspServletConfig.getInitParameter(name);
 	}
 
 	@Override
 	public Enumeration<String> getInitParameterNames() {
-		return _jspServlet.getInitParameterNames();
+		return _jspServletConfig.getInitParameterNames();
 	}
 
 	@Override
 	public ServletConfig getServletConfig() {
-		return _jspServlet.getServletConfig();
+		return _jspServletConfig;
 	}
 
 	@Override
 	public ServletContext getServletContext() {
-		return _jspServlet.getServletContext();
+		return _jspServletConfig.getServletContext();
 	}
 
 	@Override
@@ -209,7 +269,7 @@ public class JspServlet extends HttpServlet {
 
 	@Override
 	public String getServletName() {
-		return _jspServlet.getServletName();
+		return _jspServletConfig.getServletName();
 	}
 
 	@Override
@@ -223,10 +283,8 @@ public class JspServlet extends HttpServlet {
 	}
 
 	@Override
-	public void init(final ServletConfig servletConfig)
-		throws ServletException {
-
-		final ServletContext servletContext = servletConfig.getServletContext();
+	public void init(ServletConfig servletConfig) throws ServletException {
+		ServletContext servletContext = servletConfig.getServletContext();
 
 		ClassLoader classLoader = servletContext.getClassLoader();
 
@@ -249,26 +307,13 @@ public class JspServlet extends HttpServlet {
 			currentThread.setContextClassLoader(contextClassLoader);
 		}
 
-		List<Bundle> bundles = new ArrayList<>();
-
 		BundleReference bundleReference = (BundleReference)classLoader;
 
 		_bundle = bundleReference.getBundle();
 
-		bundles.add(_bundle);
-
-		bundles.add(_jspBundle);
-
 		_logger = new Logger(_bundle.getBundleContext());
 
-		collectTaglibProviderBundles(bundles);
-
-		_allParticipatingBundles = bundles.toArray(new Bundle[bundles.size()]);
-
-		_jspBundleClassloader = new JspBundleClassloader(
-			_allParticipatingBundles);
-
-		final Map<String, String> defaults = new HashMap<>();
+		Map<String, String> defaults = new HashMap<>();
 
 		defaults.put(
 			"compilerClassName",
@@ -277,6 +322,7 @@ public class JspServlet extends HttpServlet {
 		defaults.put("compilerSourceVM", "1.7");
 		defaults.put("compilerTargetVM", "1.7");
 		defaults.put("development", "false");
+		defaults.put("genStrAsCharArray", "true");
 		defaults.put("httpMethods", "GET,POST,HEAD");
 		defaults.put("keepgenerated", "false");
 		defaults.put("logVerbosityLevel", "NONE");
@@ -294,72 +340,59 @@ public class JspServlet extends HttpServlet {
 		defaults.put(
 			TagHandlerPool.OPTION_TAGPOOL, JspTagHandlerPool.class.getName());
 
-		Enumeration<String> names = servletConfig.getInitParameterNames();
-		Set<String> nameSet = new HashSet<>(Collections.list(names));
+		_jspServletConfig = new JspServletConfig(servletConfig, defaults);
 
-		nameSet.addAll(defaults.keySet());
+		if (GetterUtil.getBoolean(
+				servletConfig.getInitParameter(
+					_INIT_PARAMETER_NAME_WARM_UP))) {
 
-		final Enumeration<String> initParameterNames = Collections.enumeration(
-			nameSet);
+			_initWarmUp(servletConfig);
+		}
 
-		_jspServlet.init(
-			new ServletConfig() {
+		if (GetterUtil.getBoolean(
+				servletConfig.getInitParameter(
+					_INIT_PARAMETER_NAME_WARM_UP_COMPILER))) {
 
-				@Override
-				public String getInitParameter(String name) {
-					String value = servletConfig.getInitParameter(name);
+			final String compilerClassName =
+				_jspServletConfig.getInitParameter("compilerClassName");
 
-					if (value == null) {
-						value = defaults.get(name);
-					}
+			ScheduledThreadPoolExecutor scheduledThreadPoolExecutor =
+				JspWarmUp.getScheduledExecutorService();
 
-					return value;
-				}
+			scheduledThreadPoolExecutor.execute(
+				new Runnable() {
 
-				@Override
-				public Enumeration<String> getInitParameterNames() {
-					return initParameterNames;
-				}
-
-				@Override
-				public ServletContext getServletContext() {
-					return _jspServletContext;
-				}
+					@Override
+					public void run() {
+						JspCompiler.warmUp(compilerClassName);
+					}
 
-				@Override
-				public String getServletName() {
-					return servletConfig.getServletName();
-				}
+				});
+		}
+	}
 
-				private final ServletContext _jspServletContext =
-					(ServletContext)Proxy.newProxyInstance(
-						_jspBundleClassloader, _INTERFACES,
-						new JspServletContextInvocationHandler(
-							servletContext, _bundle));
+	@Override
+	public void service(
+			HttpServletRequest request, HttpServletResponse response)
+		throws IOException, ServletException {
 
-			});
+		if (!_initialized) {
+			_initialize();
 
-		_bundleTracker = new BundleTracker<>(
-			_bundle.getBundleContext(), Bundle.RESOLVED,
-			new JspFragmentTrackerCustomizer());
+			if (!_initialized) {
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 
-		_bundleTracker.open();
-	}
+				return;
+			}
+		}
 
-	@Override
-	public void log(String msg) {
-		_jspServlet.log(msg);
-	}
+		String path = _getPath(request);
 
-	@Override
-	public void log(String message, Throwable t) {
-		_jspServlet.log(message, t);
-	}
+		if (_jspAccessLog != null) {
+			_jspAccessLog.record(path);
+		}
 
-	@Override
-	public void service(
-			HttpServletRequest request, HttpServletResponse response)
-		throws IOException, ServletException {
+		JspWarmUp.requestStarted();
 
 		Thread currentThread = Thread.currentThread();
 
@@ -372,34 +405,25 @@ public class JspServlet extends HttpServlet {
 					_jspServlet.getInitParameter("logVerbosityLevel"),
 					"DEBUG")) {
 
-				String path = (String)request.getAttribute(
-					RequestDispatcher.INCLUDE_SERVLET_PATH);
-
-				if (path != null) {
-					String pathInfo = (String)request.getAttribute(
-						RequestDispatcher.INCLUDE_PATH_INFO);
-
-					if (pathInfo != null) {
-						path += pathInfo;
-					}
-				}
-				else {
-					path = request.getServletPath();
-
-					String pathInfo = request.getPathInfo();
-
-					if (pathInfo != null) {
-						path += pathInfo;
-					}
-				}
-
 				_jspServlet.log("[JSP DEBUG] " + _bundle + " invoking " + path);
 			}
 
-			_jspServlet.service(request, response);
+			JspServletWrapper jspServletWrapper = _jspServletWrapper;
+
+			if ((jspServletWrapper != null) && _isDirectlyServiced(request)) {
+				jspServletWrapper.service(request, response, false);
+			}
+			else if (_jspFile != null) {
+				_serviceJspFile(request, response);
+			}
+			else {
+				_jspServlet.service(request, response);
+			}
 		}
 		finally {
 			currentThread.setContextClassLoader(contextClassLoader);
+
+			JspWarmUp.requestFinished();
 		}
 	}
 
@@ -537,6 +561,286 @@ public class JspServlet extends HttpServlet {
 		}
 	}
 
+	private String _getPath(HttpServletRequest request) {
+		if (_jspFile != null) {
+			return _jspFile;
+		}
+
+		String path = (String)request.getAttribute(JSP_FILE);
+
+		if (path != null) {
+			return path;
+		}
+
+		path = (String)request.getAttribute(
+			RequestDispatcher.INCLUDE_SERVLET_PATH);
+
+		if (path != null) {
+			String pathInfo = (String)request.getAttribute(
+				RequestDispatcher.INCLUDE_PATH_INFO);
+
+			if (pathInfo != null) {
+				path += pathInfo;
+			}
+
+			return path;
+		}
+
+		path = request.getServletPath();
+
+		String pathInfo = request.getPathInfo();
+
+		if (pathInfo != null) {
+			path += pathInfo;
+		}
+
+		return path;
+	}
+
+	private synchronized void _initialize() throws ServletException {
+		if (_destroyed || _initialized) {
+			return;
+		}
+
+		List<Bundle> bundles = new ArrayList<>();
+
+		bundles.add(_bundle);
+
+		bundles.add(_jspBundle);
+
+		collectTaglibProviderBundles(bundles);
+
+		_allParticipatingBundles = bundles.toArray(new Bundle[bundles.size()]);
+
+		_jspBundleClassloader = new JspBundleClassloader(
+			_allParticipatingBundles);
+
+		_jspServletConfig.setServletContext(
+			(ServletContext)Proxy.newProxyInstance(
+				_jspBundleClassloader, _INTERFACES,
+				new JspServletContextInvocationHandler(
+					_jspServletConfig.getWrappedServletContext(), _bundle)));
+
+		JspPrecompiledClassInstaller jspPrecompiledClassInstaller =
+			new JspPrecompiledClassInstaller(_bundle, _logger);
+
+		jspPrecompiledClassInstaller.install(
+			_jspServletConfig.getServletContext(),
+			_jspServletConfig.getInitParameter(
+				_INIT_PARAMETER_NAME_SCRATCH_DIR));
+
+		_jspServlet.init(_jspServletConfig);
+
+		if (_jspFile != null) {
+			_initJspRuntimeContext();
+		}
+
+		JspFactory jspFactory = JspFactory.getDefaultFactory();
+
+		JspApplicationContext jspApplicationContext =
+			jspFactory.getJspApplicationContext(
+				_jspServletConfig.getServletContext());
+
+		ExpressionFactory expressionFactory =
+			jspApplicationContext.getExpressionFactory();
+
+		if ((jspApplicationContext instanceof JspApplicationContextImpl) &&
+			!(expressionFactory instanceof JspExpressionFactory)) {
+
+			JspApplicationContextImpl jspApplicationContextImpl =
+				(JspApplicationContextImpl)jspApplicationContext;
+
+			jspApplicationContextImpl.setExpressionFactory(
+				new JspExpressionFactory(expressionFactory));
+		}
+
+		_jspFragmentTracker.register(
+			_bundle.getSymbolicName(), _jspFragmentListener);
+
+		_initialized = true;
+	}
+
+	private void _initJspRuntimeContext() {
+		String httpMethods = _jspServletConfig.getInitParameter("httpMethods");
+
+		if ((httpMethods != null) && !httpMethods.equals("*")) {
+			_httpMethods = new HashSet<>(
+				Arrays.asList(httpMethods.trim().split("[,\\s]+")));
+		}
+
+		try {
+			Field field = ReflectionUtil.getDeclaredField(
+				org.apache.jasper.servlet.JspServlet.class, "rctxt");
+
+			_jspRuntimeContext = (JspRuntimeContext)field.get(_jspServlet);
+		}
+		catch (Exception e) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to bind " + _jspFile + " directly to its page", e);
+		}
+	}
+
+	private void _initWarmUp(ServletConfig servletConfig) {
+		String servletName = servletConfig.getServletName();
+
+		File file = _jspBundle.getDataFile(
+			"warm-up/" + _bundle.getSymbolicName() + "/" +
+				servletName.replaceAll("[^a-zA-Z0-9\\-._]", "_") +
+					".properties");
+
+		if (file == null) {
+			return;
+		}
+
+		_jspAccessLog = new JspAccessLog(file, _WARM_UP_MAX_SIZE);
+
+		try {
+			_jspAccessLog.load();
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to load JSP access log of " + _bundle, ioe);
+		}
+
+		ScheduledThreadPoolExecutor scheduledThreadPoolExecutor =
+			JspWarmUp.getScheduledExecutorService();
+
+		List<String> paths = _jspAccessLog.getTopPaths(
+			GetterUtil.getInteger(
+				servletConfig.getInitParameter(
+					_INIT_PARAMETER_NAME_WARM_UP_MAX_PAGES),
+				_WARM_UP_MAX_PAGES));
+
+		if (!paths.isEmpty()) {
+			_jspWarmUp = new JspWarmUpImpl(
+				paths,
+				GetterUtil.getLong(
+					servletConfig.getInitParameter(
+						_INIT_PARAMETER_NAME_WARM_UP_CPU_BUDGET),
+					_WARM_UP_CPU_BUDGET));
+
+			scheduledThreadPoolExecutor.execute(_jspWarmUp);
+		}
+
+		long storeInterval = GetterUtil.getLong(
+			servletConfig.getInitParameter(
+				_INIT_PARAMETER_NAME_WARM_UP_STORE_INTERVAL),
+			_WARM_UP_STORE_INTERVAL);
+
+		_storeFuture = scheduledThreadPoolExecutor.scheduleWithFixedDelay(
+			new Runnable() {
+
+				@Override
+				public void run() {
+					_storeJspAccessLog();
+				}
+
+			},
+			storeInterval, storeInterval, TimeUnit.SECONDS);
+	}
+
+	private boolean _isDirectlyServiced(HttpServletRequest request) {
+		String method = request.getMethod();
+
+		if ((method == null) || method.equals("OPTIONS") ||
+			((_httpMethods != null) && !_httpMethods.contains(method))) {
+
+			return false;
+		}
+
+		String queryString = request.getQueryString();
+
+		if ((queryString != null) &&
+			queryString.contains(Constants.PRECOMPILE)) {
+
+			return false;
+		}
+
+		return true;
+	}
+
+	private void _precompile(String path) throws IOException, ServletException {
+		if (!_initialized) {
+			_initialize();
+
+			if (!_initialized) {
+				return;
+			}
+		}
+
+		Thread currentThread = Thread.currentThread();
+
+		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+		try {
+			currentThread.setContextClassLoader(_jspBundleClassloader);
+
+			_jspServlet.service(
+				JspWarmUp.createPrecompileRequest(path),
+				JspWarmUp.createPrecompileResponse());
+		}
+		finally {
+			currentThread.setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	private void _serviceJspFile(
+			HttpServletRequest request, HttpServletResponse response)
+		throws IOException, ServletException {
+
+		int jspServletWrapperVersion = 0;
+
+		synchronized (_jspServletWrapperLock) {
+			jspServletWrapperVersion = _jspServletWrapperVersion;
+		}
+
+		Object jspFile = request.getAttribute(JSP_FILE);
+
+		request.setAttribute(JSP_FILE, _jspFile);
+
+		try {
+			_jspServlet.service(request, response);
+		}
+		finally {
+			request.setAttribute(JSP_FILE, jspFile);
+		}
+
+		if (_jspRuntimeContext == null) {
+			return;
+		}
+
+		// Do not bind a wrapper resolved before a fragment change or destroy
+
+		synchronized (_jspServletWrapperLock) {
+			if (!_destroyed &&
+				(jspServletWrapperVersion == _jspServletWrapperVersion)) {
+
+				_jspServletWrapper = _jspRuntimeContext.getWrapper(_jspFile);
+			}
+		}
+	}
+
+	private void _storeJspAccessLog() {
+		try {
+			_jspAccessLog.store();
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to store JSP access log of " + _bundle, ioe);
+		}
+	}
+
+	private void _unbindJspServletWrapper() {
+		synchronized (_jspServletWrapperLock) {
+			_jspServletWrapper = null;
+
+			_jspServletWrapperVersion++;
+		}
+	}
+
 	private static final String _ANALYZED_TLDS =
 		JspServlet.class.getName().concat("#ANALYZED_TLDS");
 
@@ -545,10 +849,32 @@ public class JspServlet extends HttpServlet {
 
 	private static final String _INIT_PARAMETER_NAME_SCRATCH_DIR = "scratchdir";
 
+	private static final String _INIT_PARAMETER_NAME_WARM_UP = "warmUp";
+
+	private static final String _INIT_PARAMETER_NAME_WARM_UP_COMPILER =
+		"warmUpCompiler";
+
+	private static final String _INIT_PARAMETER_NAME_WARM_UP_CPU_BUDGET =
+		"warmUpCpuBudget";
+
+	private static final String _INIT_PARAMETER_NAME_WARM_UP_MAX_PAGES =
+		"warmUpMaxPages";
+
+	private static final String _INIT_PARAMETER_NAME_WARM_UP_STORE_INTERVAL =
+		"warmUpStoreInterval";
+
 	private static final Class<?>[] _INTERFACES = {
 		JspServletContext.class, ServletContext.class
 	};
 
+	private static final long _WARM_UP_CPU_BUDGET = 30 * 1000;
+
+	private static final int _WARM_UP_MAX_PAGES = 100;
+
+	private static final int _WARM_UP_MAX_SIZE = 1000;
+
+	private static final long _WARM_UP_STORE_INTERVAL = 5 * 60;
+
 	private static final String _WORK_DIR =
 		PropsUtil.get(PropsKeys.LIFERAY_HOME) + File.separator + "work" +
 			File.separator;
@@ -556,22 +882,39 @@ public class JspServlet extends HttpServlet {
 	private static final Map<Method, Method> _contextAdapterMethods;
 	private static final Bundle _jspBundle = FrameworkUtil.getBundle(
 		JspServlet.class);
+	private static final JspFragmentTracker _jspFragmentTracker;
 	private static final Pattern _originalJspPattern = Pattern.compile(
 		"^(?<file>.*)(\\.(portal|original))(?<extension>\\.(jsp|jspf))$");
 
 	static {
 		_contextAdapterMethods = _createContextAdapterMethods();
+
+		_jspFragmentTracker = new JspFragmentTracker(
+			_jspBundle.getBundleContext());
 	}
 
 	private Bundle[] _allParticipatingBundles;
 	private Bundle _bundle;
-	private BundleTracker<List<Path>> _bundleTracker;
+	private volatile boolean _destroyed;
+	private Set<String> _httpMethods;
+	private volatile boolean _initialized;
+	private JspAccessLog _jspAccessLog;
 	private JspBundleClassloader _jspBundleClassloader;
+	private final String _jspFile;
+	private final JspFragmentListener _jspFragmentListener =
+		new JspFragmentListenerImpl();
+	private JspRuntimeContext _jspRuntimeContext;
 	private final HttpServlet _jspServlet =
 		new org.apache.jasper.servlet.JspServlet();
+	private JspServletConfig _jspServletConfig;
+	private volatile JspServletWrapper _jspServletWrapper;
+	private final Object _jspServletWrapperLock = new Object();
+	private int _jspServletWrapperVersion;
+	private JspWarmUp _jspWarmUp;
 	private Logger _logger;
 	private final List<ServiceRegistration<?>> _serviceRegistrations =
 		new CopyOnWriteArrayList<>();
+	private ScheduledFuture<?> _storeFuture;
 
 	private class DeleteFileVisitor extends SimpleFileVisitor<Path> {
 
@@ -594,36 +937,21 @@ public class JspServlet extends HttpServlet {
 
 	}
 
-	private class JspFragmentTrackerCustomizer
-		implements BundleTrackerCustomizer<List<Path>> {
+	private class JspFragmentListenerImpl implements JspFragmentListener {
 
 		@Override
-		public List<Path> addingBundle(Bundle bundle, BundleEvent bundleEvent) {
-			List<Path> paths = new ArrayList<>();
+		public void fragmentAdded(Bundle fragment) {
+			_unbindJspServletWrapper();
 
-			Dictionary<String, String> headers = bundle.getHeaders();
-
-			String fragmentHost = headers.get("Fragment-Host");
-
-			if (fragmentHost == null) {
-				return null;
-			}
-
-			String[] fragmentHostParts = fragmentHost.split(";");
-
-			fragmentHost = fragmentHostParts[0];
-
-			String symbolicName = _bundle.getSymbolicName();
-
-			if (!symbolicName.equals(fragmentHost)) {
-				return null;
-			}
+			List<Path> paths = new ArrayList<>();
 
-			Enumeration<URL> enumeration = bundle.findEntries(
+			Enumeration<URL> enumeration = fragment.findEntries(
 				_DIR_NAME_RESOURCES, "*.jsp", true);
 
 			if (enumeration == null) {
-				return paths;
+				_fragmentPaths.put(fragment, paths);
+
+				return;
 			}
 
 			String scratchDirName = _jspServlet.getInitParameter(
@@ -655,17 +983,18 @@ public class JspServlet extends HttpServlet {
 
 			_deleteOutdatedJspFiles(scratchDirName, paths);
 
-			return paths;
+			_fragmentPaths.put(fragment, paths);
 		}
 
 		@Override
-		public void modifiedBundle(
-			Bundle bundle, BundleEvent bundleEvent, List<Path> paths) {
-		}
+		public void fragmentRemoved(Bundle fragment) {
+			_unbindJspServletWrapper();
 
-		@Override
-		public void removedBundle(
-			Bundle bundle, BundleEvent bundleEvent, final List<Path> paths) {
+			List<Path> paths = _fragmentPaths.remove(fragment);
+
+			if (paths == null) {
+				return;
+			}
 
 			String scratchDirName = _jspServlet.getInitParameter(
 				_INIT_PARAMETER_NAME_SCRATCH_DIR);
@@ -673,6 +1002,72 @@ public class JspServlet extends HttpServlet {
 			_deleteOutdatedJspFiles(scratchDirName, paths);
 		}
 
+		private final Map<Bundle, List<Path>> _fragmentPaths =
+			new ConcurrentHashMap<>();
+
+	}
+
+	private class JspServletConfig implements ServletConfig {
+
+		public JspServletConfig(
+			ServletConfig servletConfig, Map<String, String> defaults) {
+
+			_servletConfig = servletConfig;
+			_defaults = defaults;
+
+			Set<String> initParameterNames = new HashSet<>(
+				Collections.list(servletConfig.getInitParameterNames()));
+
+			initParameterNames.addAll(defaults.keySet());
+
+			_initParameterNames = initParameterNames;
+		}
+
+		@Override
+		public String getInitParameter(String name) {
+			String value = _servletConfig.getInitParameter(name);
+
+			if (value == null) {
+				value = _defaults.get(name);
+			}
+
+			return value;
+		}
+
+		@Override
+		public Enumeration<String> getInitParameterNames() {
+			return Collections.enumeration(_initParameterNames);
+		}
+
+		@Override
+		public ServletContext getServletContext() {
+			ServletContext servletContext = _servletContext;
+
+			if (servletContext == null) {
+				servletContext = _servletConfig.getServletContext();
+			}
+
+			return servletContext;
+		}
+
+		@Override
+		public String getServletName() {
+			return _servletConfig.getServletName();
+		}
+
+		public ServletContext getWrappedServletContext() {
+			return _servletConfig.getServletContext();
+		}
+
+		public void setServletContext(ServletContext servletContext) {
+			_servletContext = servletContext;
+		}
+
+		private final Map<String, String> _defaults;
+		private final Set<String> _initParameterNames;
+		private final ServletConfig _servletConfig;
+		private volatile ServletContext _servletContext;
+
 	}
 
 	private class JspServletContextInvocationHandler
@@ -853,4 +1248,24 @@ public class JspServlet extends HttpServlet {
 
 	}
 
+	private class JspWarmUpImpl extends JspWarmUp {
+
+		public JspWarmUpImpl(List<String> paths, long cpuBudget) {
+			super(paths, cpuBudget);
+		}
+
+		@Override
+		protected void compile(String path) throws Exception {
+			_precompile(path);
+		}
+
+		@Override
+		protected void onError(String path, Exception e) {
+			_logger.log(
+				Logger.LOG_DEBUG,
+				"Unable to warm up " + path + " of " + _bundle, e);
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.portal.kernel.util.GetterUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often each JSP of a bundle is requested and persists the counts
+ * so that the most requested JSPs can be compiled first after a restart.
+ *
+ * @author agent
+ */
+public class JspAccessLog {
+
+	public JspAccessLog(File file, int maxSize) {
+		_file = file;
+		_maxSize = maxSize;
+	}
+
+	public List<String> getTopPaths(int count) {
+		Map<String, Long> counts = new HashMap<>();
+
+		for (Map.Entry<String, AtomicLong> entry : _counts.entrySet()) {
+			AtomicLong value = entry.getValue();
+
+			counts.put(entry.getKey(), value.get());
+		}
+
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(
+			counts.entrySet());
+
+		Collections.sort(entries, _comparator);
+
+		List<String> paths = new ArrayList<>();
+
+		for (Map.Entry<String, Long> entry : entries) {
+			if (paths.size() >= count) {
+				break;
+			}
+
+			paths.add(entry.getKey());
+		}
+
+		return paths;
+	}
+
+	public void load() throws IOException {
+		if (!_file.exists()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream inputStream = new FileInputStream(_file)) {
+			properties.load(inputStream);
+		}
+
+		for (String path : properties.stringPropertyNames()) {
+			long count = GetterUtil.getLong(properties.getProperty(path));
+
+			if (count > 0) {
+				_getCount(path).addAndGet(count);
+			}
+		}
+	}
+
+	public void record(String path) {
+		AtomicLong count = _counts.get(path);
+
+		if (count == null) {
+			if (_counts.size() >= (_maxSize * 2)) {
+				return;
+			}
+
+			count = _getCount(path);
+		}
+
+		count.incrementAndGet();
+
+		_dirty = true;
+	}
+
+	public synchronized void store() throws IOException {
+		if (!_dirty) {
+			return;
+		}
+
+		_dirty = false;
+
+		Properties properties = new Properties();
+
+		for (String path : getTopPaths(_maxSize)) {
+			AtomicLong count = _counts.get(path);
+
+			properties.setProperty(path, String.valueOf(count.get()));
+		}
+
+		File parentFile = _file.getParentFile();
+
+		if (parentFile != null) {
+			parentFile.mkdirs();
+		}
+
+		try (OutputStream outputStream = new FileOutputStream(_file)) {
+			properties.store(outputStream, null);
+		}
+	}
+
+	private AtomicLong _getCount(String path) {
+		AtomicLong count = _counts.get(path);
+
+		if (count != null) {
+			return count;
+		}
+
+		count = new AtomicLong();
+
+		AtomicLong previousCount = _counts.putIfAbsent(path, count);
+
+		if (previousCount != null) {
+			count = previousCount;
+		}
+
+		return count;
+	}
+
+	private static final Comparator<Map.Entry<String, Long>> _comparator =
+		new Comparator<Map.Entry<String, Long>>() {
+
+			@Override
+			public int compare(
+				Map.Entry<String, Long> entry1,
+				Map.Entry<String, Long> entry2) {
+
+				int value = Long.compare(entry2.getValue(), entry1.getValue());
+
+				if (value != 0) {
+					return value;
+				}
+
+				String path1 = entry1.getKey();
+
+				return path1.compareTo(entry2.getKey());
+			}
+
+		};
+
+	private final ConcurrentHashMap<String, AtomicLong> _counts =
+		new ConcurrentHashMap<>();
+	private volatile boolean _dirty;
+	private final File _file;
+	private final int _maxSize;
+
+}
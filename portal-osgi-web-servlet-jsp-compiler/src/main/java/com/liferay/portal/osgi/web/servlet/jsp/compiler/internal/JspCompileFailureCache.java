@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.portal.kernel.concurrent.ConcurrentReferenceKeyHashMap;
+import com.liferay.portal.kernel.memory.FinalizeManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jasper.compiler.JavacErrorDetail;
+
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Remembers the javac errors of generated JSP sources that failed to compile
+ * so that identical sources are not handed to javac again until an
+ * exponentially growing backoff has elapsed. Entries are keyed by the wiring
+ * of the JSP bundle, so refreshing the bundle or any of its dependencies
+ * discards them, and by the generated source, so any change to the JSP
+ * bypasses them.
+ *
+ * @author agent
+ */
+public class JspCompileFailureCache {
+
+	public JspCompileFailureCache(long initialBackoff, long maxBackoff) {
+		_initialBackoff = initialBackoff;
+		_maxBackoff = maxBackoff;
+	}
+
+	public JavacErrorDetail[] get(
+		BundleWiring bundleWiring, String className, String source) {
+
+		Map<String, Failure> failures = _failures.get(bundleWiring);
+
+		if (failures == null) {
+			return null;
+		}
+
+		Failure failure = failures.get(className);
+
+		if ((failure == null) || !source.equals(failure._source) ||
+			(System.currentTimeMillis() >= failure._retryTime)) {
+
+			return null;
+		}
+
+		return failure._javacErrorDetails;
+	}
+
+	public int getFailureCount(BundleWiring bundleWiring, String className) {
+		Map<String, Failure> failures = _failures.get(bundleWiring);
+
+		if (failures == null) {
+			return 0;
+		}
+
+		Failure failure = failures.get(className);
+
+		if (failure == null) {
+			return 0;
+		}
+
+		return failure._failureCount;
+	}
+
+	public void put(
+		BundleWiring bundleWiring, String className, String source,
+		JavacErrorDetail[] javacErrorDetails) {
+
+		Map<String, Failure> failures = _failures.get(bundleWiring);
+
+		if (failures == null) {
+			failures = new ConcurrentHashMap<>();
+
+			Map<String, Failure> previousFailures = _failures.putIfAbsent(
+				bundleWiring, failures);
+
+			if (previousFailures != null) {
+				failures = previousFailures;
+			}
+		}
+
+		int failureCount = 1;
+
+		Failure failure = failures.get(className);
+
+		if ((failure != null) && source.equals(failure._source)) {
+			failureCount = failure._failureCount + 1;
+		}
+
+		long backoff = _initialBackoff;
+
+		for (int i = 1; (i < failureCount) && (backoff < _maxBackoff); i++) {
+			backoff <<= 1;
+		}
+
+		backoff = Math.min(backoff, _maxBackoff);
+
+		failures.put(
+			className,
+			new Failure(
+				source, javacErrorDetails, failureCount,
+				System.currentTimeMillis() + backoff));
+	}
+
+	public void remove(BundleWiring bundleWiring, String className) {
+		Map<String, Failure> failures = _failures.get(bundleWiring);
+
+		if (failures != null) {
+			failures.remove(className);
+		}
+	}
+
+	private final ConcurrentMap<BundleWiring, Map<String, Failure>> _failures =
+		new ConcurrentReferenceKeyHashMap<>(
+			FinalizeManager.WEAK_REFERENCE_FACTORY);
+	private final long _initialBackoff;
+	private final long _maxBackoff;
+
+	private static class Failure {
+
+		public Failure(
+			String source, JavacErrorDetail[] javacErrorDetails,
+			int failureCount, long retryTime) {
+
+			_source = source;
+			_javacErrorDetails = javacErrorDetails;
+			_failureCount = failureCount;
+			_retryTime = retryTime;
+		}
+
+		private final int _failureCount;
+		private final JavacErrorDetail[] _javacErrorDetails;
+		private final long _retryTime;
+		private final String _source;
+
+	}
+
+}
@@ -18,13 +18,19 @@ import com.liferay.osgi.util.ServiceTrackerFactory;
 import com.liferay.portal.kernel.concurrent.ConcurrentReferenceKeyHashMap;
 import com.liferay.portal.kernel.concurrent.ConcurrentReferenceValueHashMap;
 import com.liferay.portal.kernel.memory.FinalizeManager;
+import com.liferay.portal.kernel.util.GetterUtil;
 import com.liferay.portal.kernel.util.StringBundler;
 import com.liferay.portal.kernel.util.StringPool;
+import com.liferay.portal.kernel.util.SystemProperties;
+import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.util.BytecodeUtil;
 import com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.util.ClassPathUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
+import java.net.URI;
 import java.net.URL;
 
 import java.security.AccessController;
@@ -34,20 +40,28 @@ import java.security.ProtectionDomain;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import javax.servlet.ServletContext;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileManager;
+import javax.tools.JavaFileManager.Location;
 import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
@@ -76,13 +90,53 @@ import org.osgi.util.tracker.ServiceTracker;
  */
 public class JspCompiler extends Jsr199JavaCompiler {
 
+	public static void warmUp(String compilerClassName) {
+		if (!_warmedUpCompilerClassNames.add(compilerClassName)) {
+			return;
+		}
+
+		JspCompiler jspCompiler = null;
+
+		try {
+			ClassLoader classLoader = JspCompiler.class.getClassLoader();
+
+			Class<?> clazz = classLoader.loadClass(compilerClassName);
+
+			if (!JspCompiler.class.isAssignableFrom(clazz)) {
+				return;
+			}
+
+			jspCompiler = (JspCompiler)clazz.newInstance();
+		}
+		catch (ReflectiveOperationException roe) {
+			return;
+		}
+
+		jspCompiler._warmUp();
+	}
+
 	@Override
 	public JavacErrorDetail[] compile(String className, Nodes pageNodes)
 		throws JasperException {
 
 		classFiles = new ArrayList<>();
 
-		JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+		String source = charArrayWriter.toString();
+
+		JavacErrorDetail[] javacErrorDetails = _jspCompileFailureCache.get(
+			_bundleWiring, className, source);
+
+		if (javacErrorDetails != null) {
+			_logger.log(
+				Logger.LOG_DEBUG,
+				"Skipping compilation of " + className + " after " +
+					_jspCompileFailureCache.getFailureCount(
+						_bundleWiring, className) + " failed attempts");
+
+			return javacErrorDetails;
+		}
+
+		JavaCompiler javaCompiler = getJavaCompiler();
 
 		if (javaCompiler == null) {
 			errDispatcher.jspError("jsp.error.nojdk");
@@ -105,6 +159,36 @@ public class JspCompiler extends Jsr199JavaCompiler {
 			throw new JasperException(ioe);
 		}
 
+		BundleWiring tagFileBundleWiring = null;
+
+		if (_TAG_FILE_CACHE_ENABLED) {
+			tagFileBundleWiring = _getTagFileBundleWiring();
+		}
+
+		if (tagFileBundleWiring != null) {
+			Map<String, byte[]> bytecodes = _jspTagFileCache.get(
+				tagFileBundleWiring, className, source);
+
+			if (bytecodes != null) {
+				_setBytecodes(standardJavaFileManager, bytecodes);
+
+				return null;
+			}
+		}
+
+		if (_compileSemaphore != null) {
+			try {
+				_compileSemaphore.acquire();
+			}
+			catch (InterruptedException ie) {
+				Thread currentThread = Thread.currentThread();
+
+				currentThread.interrupt();
+
+				throw new JasperException(ie);
+			}
+		}
+
 		try (JavaFileManager javaFileManager = getJavaFileManager(
 				standardJavaFileManager)) {
 
@@ -113,13 +197,32 @@ public class JspCompiler extends Jsr199JavaCompiler {
 				Arrays.asList(
 					new StringJavaFileObject(
 						className.substring(className.lastIndexOf('.') + 1),
-						charArrayWriter.toString())));
+						source)));
 
 			if (compilationTask.call()) {
+				Map<String, byte[]> bytecodes = new HashMap<>();
+
 				for (BytecodeFile bytecodeFile : classFiles) {
+					bytecodes.put(
+						bytecodeFile.getClassName(),
+						bytecodeFile.getBytecode());
+
 					rtctxt.setBytecode(
 						bytecodeFile.getClassName(),
 						bytecodeFile.getBytecode());
+
+					if (_HUGE_METHOD_LIMIT > 0) {
+						_checkHugeMethods(
+							bytecodeFile.getClassName(),
+							bytecodeFile.getBytecode());
+					}
+				}
+
+				_jspCompileFailureCache.remove(_bundleWiring, className);
+
+				if (tagFileBundleWiring != null) {
+					_jspTagFileCache.put(
+						tagFileBundleWiring, className, source, bytecodes);
 				}
 
 				return null;
@@ -128,12 +231,16 @@ public class JspCompiler extends Jsr199JavaCompiler {
 		catch (IOException ioe) {
 			throw new JasperException(ioe);
 		}
+		finally {
+			if (_compileSemaphore != null) {
+				_compileSemaphore.release();
+			}
+		}
 
 		List<Diagnostic<? extends JavaFileObject>> diagnostics =
 			diagnosticCollector.getDiagnostics();
 
-		JavacErrorDetail[] javacErrorDetails = new JavacErrorDetail[
-			diagnostics.size()];
+		javacErrorDetails = new JavacErrorDetail[diagnostics.size()];
 
 		for (int i = 0; i < diagnostics.size(); i++) {
 			Diagnostic<? extends JavaFileObject> diagnostic = diagnostics.get(
@@ -145,6 +252,9 @@ public class JspCompiler extends Jsr199JavaCompiler {
 				(int)diagnostic.getLineNumber());
 		}
 
+		_jspCompileFailureCache.put(
+			_bundleWiring, className, source, javacErrorDetails);
+
 		return javacErrorDetails;
 	}
 
@@ -176,6 +286,7 @@ public class JspCompiler extends Jsr199JavaCompiler {
 
 		BundleWiring bundleWiring = bundle.adapt(BundleWiring.class);
 
+		_bundleWiring = bundleWiring;
 		_classLoader = bundleWiring.getClassLoader();
 
 		for (BundleWire bundleWire : bundleWiring.getRequiredWires(null)) {
@@ -314,6 +425,10 @@ public class JspCompiler extends Jsr199JavaCompiler {
 		}
 	}
 
+	protected JavaCompiler getJavaCompiler() {
+		return ToolProvider.getSystemJavaCompiler();
+	}
+
 	@Override
 	protected JavaFileManager getJavaFileManager(
 		JavaFileManager javaFileManager) {
@@ -425,23 +540,225 @@ public class JspCompiler extends Jsr199JavaCompiler {
 		return packageNames;
 	}
 
+	private static String _getWarmUpSource() {
+		StringBundler sb = new StringBundler(
+			_JSP_COMPILER_DEPENDENCIES.length * 5 + 10);
+
+		sb.append("package org.apache.jsp;\n");
+		sb.append("public final class ");
+		sb.append(_WARM_UP_CLASS_NAME);
+		sb.append(" extends org.apache.jasper.runtime.HttpJspBase {\n");
+		sb.append("public void _jspService(");
+		sb.append("javax.servlet.http.HttpServletRequest request, ");
+		sb.append("javax.servlet.http.HttpServletResponse response) ");
+		sb.append("throws java.io.IOException, ");
+		sb.append("javax.servlet.ServletException {");
+
+		for (int i = 0; i < _JSP_COMPILER_DEPENDENCIES.length; i++) {
+			sb.append("\nClass<?> class");
+			sb.append(i);
+			sb.append(" = ");
+			sb.append(_JSP_COMPILER_DEPENDENCIES[i]);
+			sb.append(".class;");
+		}
+
+		sb.append("\n}\n}");
+
+		return sb.toString();
+	}
+
+	private void _checkHugeMethods(String className, byte[] bytecode) {
+		Map<String, Integer> hugeMethods = null;
+
+		try {
+			hugeMethods = BytecodeUtil.getHugeMethods(
+				bytecode, _HUGE_METHOD_LIMIT);
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_DEBUG, "Unable to analyze bytecode of " + className,
+				ioe);
+
+			return;
+		}
+
+		for (Map.Entry<String, Integer> entry : hugeMethods.entrySet()) {
+			StringBundler sb = new StringBundler(9);
+
+			sb.append("Method ");
+			sb.append(entry.getKey());
+			sb.append(" of ");
+			sb.append(className);
+			sb.append(" has ");
+			sb.append(entry.getValue());
+			sb.append(" bytes of bytecode and will not be JIT compiled ");
+			sb.append("because it exceeds ");
+			sb.append(_HUGE_METHOD_LIMIT);
+
+			_logger.log(Logger.LOG_WARNING, sb.toString());
+		}
+	}
+
+	private BundleWiring _getTagFileBundleWiring() {
+		if (!ctxt.isTagFile()) {
+			return null;
+		}
+
+		String tagFilePath = ctxt.getJspFile();
+
+		if (!tagFilePath.startsWith("/META-INF/")) {
+			return null;
+		}
+
+		for (int i = 0; i < _allParticipatingBundles.length; i++) {
+			Bundle bundle = _allParticipatingBundles[i];
+
+			if (bundle.getResource(tagFilePath.substring(1)) == null) {
+				continue;
+			}
+
+			if (i == 0) {
+				return null;
+			}
+
+			return bundle.adapt(BundleWiring.class);
+		}
+
+		return null;
+	}
+
+	private void _setBytecodes(
+			JavaFileManager javaFileManager, Map<String, byte[]> bytecodes)
+		throws JasperException {
+
+		try (JavaFileManager bytecodeJavaFileManager =
+				super.getJavaFileManager(javaFileManager)) {
+
+			for (Map.Entry<String, byte[]> entry : bytecodes.entrySet()) {
+				JavaFileObject javaFileObject =
+					bytecodeJavaFileManager.getJavaFileForOutput(
+						StandardLocation.CLASS_OUTPUT, entry.getKey(),
+						Kind.CLASS, null);
+
+				try (OutputStream outputStream =
+						javaFileObject.openOutputStream()) {
+
+					outputStream.write(entry.getValue());
+				}
+
+				rtctxt.setBytecode(entry.getKey(), entry.getValue());
+			}
+		}
+		catch (IOException ioe) {
+			throw new JasperException(ioe);
+		}
+	}
+
+	private void _warmUp() {
+		Bundle jspBundle = _jspBundleWiring.getBundle();
+
+		_logger = new Logger(jspBundle.getBundleContext());
+
+		JavaCompiler javaCompiler = getJavaCompiler();
+
+		if (javaCompiler == null) {
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		initClassPath(null);
+
+		DiagnosticCollector<JavaFileObject> diagnosticCollector =
+			new DiagnosticCollector<>();
+
+		StandardJavaFileManager standardJavaFileManager =
+			javaCompiler.getStandardFileManager(
+				diagnosticCollector, null, null);
+
+		try {
+			standardJavaFileManager.setLocation(
+				StandardLocation.CLASS_PATH, _classPath);
+
+			JavaFileManager javaFileManager = new BundleJavaFileManager(
+				_jspBundleWiring.getClassLoader(), _systemPackageNames,
+				standardJavaFileManager, _logger, false,
+				new JspJavaFileObjectResolver(
+					_jspBundleWiring, _jspBundleWiring,
+					_bundleWiringPackageNames, _logger, _serviceTracker));
+
+			try (JavaFileManager discardingJavaFileManager =
+					new DiscardingJavaFileManager(javaFileManager)) {
+
+				CompilationTask compilationTask = javaCompiler.getTask(
+					null, discardingJavaFileManager, diagnosticCollector,
+					Arrays.asList("-proc:none"), null,
+					Arrays.asList(
+						new StringJavaFileObject(
+							_WARM_UP_CLASS_NAME, _getWarmUpSource())));
+
+				if (!compilationTask.call()) {
+					_logger.log(
+						Logger.LOG_DEBUG,
+						"JSP compiler warm up reported " +
+							diagnosticCollector.getDiagnostics());
+				}
+			}
+		}
+		catch (Exception e) {
+			_logger.log(
+				Logger.LOG_WARNING, "Unable to warm up JSP compiler", e);
+
+			return;
+		}
+
+		_logger.log(
+			Logger.LOG_DEBUG,
+			"Warmed up JSP compiler in " +
+				(System.currentTimeMillis() - startTime) + " ms");
+	}
+
+	private static final long _COMPILE_FAILURE_BACKOFF_INITIAL = 1000;
+
+	private static final long _COMPILE_FAILURE_BACKOFF_MAX = 5 * 60 * 1000;
+
+	private static final int _HUGE_METHOD_LIMIT = GetterUtil.getInteger(
+		SystemProperties.get("portal.servlet.jsp.compiler.huge.method.limit"));
+
 	private static final String[] _JSP_COMPILER_DEPENDENCIES = {
 		"com.liferay.portal.kernel.exception.PortalException",
 		"com.liferay.portal.util.PortalImpl", "javax.portlet.PortletException",
 		"javax.servlet.ServletException"
 	};
 
+	private static final boolean _TAG_FILE_CACHE_ENABLED =
+		GetterUtil.getBoolean(
+			SystemProperties.get(
+				"portal.servlet.jsp.compiler.tag.file.cache.enabled"),
+			true);
+
+	private static final String _WARM_UP_CLASS_NAME =
+		"jsp_005fcompiler_005fwarm_005fup_jsp";
+
 	private static final Map<BundleWiring, Set<String>>
 		_bundleWiringPackageNamesCache = new ConcurrentReferenceKeyHashMap<>(
 			new ConcurrentReferenceValueHashMap<BundleWiring, Set<String>>(
 				FinalizeManager.SOFT_REFERENCE_FACTORY),
 			FinalizeManager.WEAK_REFERENCE_FACTORY);
+	private static final Semaphore _compileSemaphore;
 	private static final BundleWiring _jspBundleWiring;
+	private static final JspCompileFailureCache _jspCompileFailureCache =
+		new JspCompileFailureCache(
+			_COMPILE_FAILURE_BACKOFF_INITIAL, _COMPILE_FAILURE_BACKOFF_MAX);
 	private static final Map<BundleWiring, Set<String>>
 		_jspBundleWiringPackageNames = new HashMap<>();
+	private static final JspTagFileCache _jspTagFileCache =
+		new JspTagFileCache();
 	private static final ServiceTracker
 		<Map<String, List<URL>>, Map<String, List<URL>>> _serviceTracker;
 	private static final Set<String> _systemPackageNames;
+	private static final Set<String> _warmedUpCompilerClassNames =
+		Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	static {
 		Bundle jspBundle = FrameworkUtil.getBundle(JspCompiler.class);
@@ -486,9 +803,21 @@ public class JspCompiler extends Jsr199JavaCompiler {
 			bundleContext,
 			"(&(jsp.compiler.resource.map=*)(objectClass=" +
 				Map.class.getName() + "))");
+
+		int maxConcurrency = GetterUtil.getInteger(
+			SystemProperties.get(
+				"portal.servlet.jsp.compiler.max.concurrency"));
+
+		if (maxConcurrency > 0) {
+			_compileSemaphore = new Semaphore(maxConcurrency, true);
+		}
+		else {
+			_compileSemaphore = null;
+		}
 	}
 
 	private Bundle[] _allParticipatingBundles;
+	private BundleWiring _bundleWiring;
 	private final Map<BundleWiring, Set<String>> _bundleWiringPackageNames =
 		new HashMap<>(_jspBundleWiringPackageNames);
 	private ClassLoader _classLoader;
@@ -496,4 +825,32 @@ public class JspCompiler extends Jsr199JavaCompiler {
 	private JavaFileObjectResolver _javaFileObjectResolver;
 	private Logger _logger;
 
+	private static class DiscardingJavaFileManager
+		extends ForwardingJavaFileManager<JavaFileManager> {
+
+		public DiscardingJavaFileManager(JavaFileManager javaFileManager) {
+			super(javaFileManager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(
+			Location location, String className, Kind kind,
+			FileObject fileObject) {
+
+			return new SimpleJavaFileObject(
+				URI.create(
+					"string:///" + className.replace('.', '/') +
+						kind.extension),
+				kind) {
+
+				@Override
+				public OutputStream openOutputStream() {
+					return new ByteArrayOutputStream();
+				}
+
+			};
+		}
+
+	}
+
 }
\ No newline at end of file
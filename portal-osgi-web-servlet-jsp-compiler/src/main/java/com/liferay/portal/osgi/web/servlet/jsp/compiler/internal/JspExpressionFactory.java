@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.portal.kernel.util.GetterUtil;
+import com.liferay.portal.kernel.util.SystemProperties;
+
+import java.lang.reflect.Method;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.MethodExpression;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+
+/**
+ * Reuses the value expressions created for the same expression text and
+ * expected type across all JSP pages and bundles. Only expressions that
+ * cannot capture functions or variables from the creating context are
+ * shared, which are those without parentheses whose identifiers are not
+ * mapped by the variable mapper of the context, and only for expected types of
+ * the boot class loader so that the cache never pins a bundle class loader.
+ * The least recently used expressions are evicted once the cache is full.
+ *
+ * @author agent
+ */
+public class JspExpressionFactory extends ExpressionFactory {
+
+	public static long getHitCount() {
+		return _hitCount.get();
+	}
+
+	public static long getMissCount() {
+		return _missCount.get();
+	}
+
+	public JspExpressionFactory(ExpressionFactory expressionFactory) {
+		_expressionFactory = expressionFactory;
+	}
+
+	@Override
+	public Object coerceToType(Object object, Class<?> targetType) {
+		return _expressionFactory.coerceToType(object, targetType);
+	}
+
+	@Override
+	public MethodExpression createMethodExpression(
+		ELContext elContext, String expression, Class<?> expectedReturnType,
+		Class<?>[] expectedParamTypes) {
+
+		return _expressionFactory.createMethodExpression(
+			elContext, expression, expectedReturnType, expectedParamTypes);
+	}
+
+	@Override
+	public ValueExpression createValueExpression(
+		ELContext elContext, String expression, Class<?> expectedType) {
+
+		if (!_isCacheable(elContext, expression, expectedType)) {
+			return _expressionFactory.createValueExpression(
+				elContext, expression, expectedType);
+		}
+
+		ValueExpressionKey valueExpressionKey = new ValueExpressionKey(
+			expression, expectedType);
+
+		Map<ValueExpressionKey, ValueExpression> valueExpressions =
+			_valueExpressions.get(
+				(valueExpressionKey.hashCode() & Integer.MAX_VALUE) %
+					_valueExpressions.size());
+
+		ValueExpression valueExpression = null;
+
+		synchronized (valueExpressions) {
+			valueExpression = valueExpressions.get(valueExpressionKey);
+		}
+
+		if (valueExpression != null) {
+			_hitCount.incrementAndGet();
+
+			return valueExpression;
+		}
+
+		_missCount.incrementAndGet();
+
+		valueExpression = _expressionFactory.createValueExpression(
+			elContext, expression, expectedType);
+
+		synchronized (valueExpressions) {
+			valueExpressions.put(valueExpressionKey, valueExpression);
+		}
+
+		return valueExpression;
+	}
+
+	@Override
+	public ValueExpression createValueExpression(
+		Object instance, Class<?> expectedType) {
+
+		return _expressionFactory.createValueExpression(instance, expectedType);
+	}
+
+	@Override
+	public Map<String, Method> getInitFunctionMap() {
+		return _expressionFactory.getInitFunctionMap();
+	}
+
+	@Override
+	public ELResolver getStreamELResolver() {
+		return _expressionFactory.getStreamELResolver();
+	}
+
+	private static List<Map<ValueExpressionKey, ValueExpression>>
+		_createValueExpressions() {
+
+		int maxSize = (_MAX_SIZE + _SEGMENTS - 1) / _SEGMENTS;
+
+		List<Map<ValueExpressionKey, ValueExpression>> valueExpressions =
+			new ArrayList<>(_SEGMENTS);
+
+		for (int i = 0; i < _SEGMENTS; i++) {
+			valueExpressions.add(new LRUMap(maxSize));
+		}
+
+		return valueExpressions;
+	}
+
+	private boolean _isCacheable(
+		ELContext elContext, String expression, Class<?> expectedType) {
+
+		if ((_MAX_SIZE <= 0) || (elContext == null) || (expression == null) ||
+			(expectedType == null) ||
+			(expectedType.getClassLoader() != null) ||
+			(expression.indexOf('(') != -1)) {
+
+			return false;
+		}
+
+		VariableMapper variableMapper = elContext.getVariableMapper();
+
+		if (variableMapper == null) {
+			return true;
+		}
+
+		// Jasper gives every page context a variable mapper. The expression
+		// only captures the variables it resolves through it, so it can be
+		// shared when none of its identifiers are mapped.
+
+		Matcher matcher = _identifierPattern.matcher(expression);
+
+		while (matcher.find()) {
+			if (variableMapper.resolveVariable(matcher.group()) != null) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static final int _MAX_SIZE = GetterUtil.getInteger(
+		SystemProperties.get("portal.servlet.jsp.compiler.el.cache.max.size"),
+		10000);
+
+	private static final int _SEGMENTS = 16;
+
+	private static final AtomicLong _hitCount = new AtomicLong();
+	private static final Pattern _identifierPattern = Pattern.compile(
+		"\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+	private static final AtomicLong _missCount = new AtomicLong();
+	private static final List<Map<ValueExpressionKey, ValueExpression>>
+		_valueExpressions = _createValueExpressions();
+
+	private final ExpressionFactory _expressionFactory;
+
+	private static class LRUMap
+		extends LinkedHashMap<ValueExpressionKey, ValueExpression> {
+
+		public LRUMap(int maxSize) {
+			super(16, 0.75F, true);
+
+			_maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(
+			Map.Entry<ValueExpressionKey, ValueExpression> entry) {
+
+			if (size() > _maxSize) {
+				return true;
+			}
+
+			return false;
+		}
+
+		private static final long serialVersionUID = 1L;
+
+		private final int _maxSize;
+
+	}
+
+	private static class ValueExpressionKey {
+
+		public ValueExpressionKey(String expression, Class<?> expectedType) {
+			_expression = expression;
+			_expectedType = expectedType;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof ValueExpressionKey)) {
+				return false;
+			}
+
+			ValueExpressionKey valueExpressionKey = (ValueExpressionKey)obj;
+
+			if (_expression.equals(valueExpressionKey._expression) &&
+				(_expectedType == valueExpressionKey._expectedType)) {
+
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return (_expression.hashCode() * 31) + _expectedType.hashCode();
+		}
+
+		private final Class<?> _expectedType;
+		private final String _expression;
+
+	}
+
+}
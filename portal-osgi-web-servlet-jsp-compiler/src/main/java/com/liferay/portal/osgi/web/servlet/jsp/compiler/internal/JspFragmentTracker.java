@@ -0,0 +1,350 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.util.tracker.BundleTracker;
+import org.osgi.util.tracker.BundleTrackerCustomizer;
+
+/**
+ * Tracks fragment bundles once for the whole framework and indexes them by
+ * the symbolic name in their <code>Fragment-Host</code> header, so that bundle
+ * events only reach the listeners registered for that host. The tracker is
+ * open while at least one listener is registered.
+ *
+ * <p>
+ * Events are queued for each listener while the index is locked and delivered
+ * after the lock is released, one at a time and in queue order. A listener
+ * therefore sees the fragments that existed when it registered before any
+ * later removal of them.
+ * </p>
+ *
+ * @author agent
+ */
+public class JspFragmentTracker {
+
+	public static String getFragmentHost(Bundle bundle) {
+		Dictionary<String, String> headers = bundle.getHeaders();
+
+		String fragmentHost = headers.get("Fragment-Host");
+
+		if (fragmentHost == null) {
+			return null;
+		}
+
+		int index = fragmentHost.indexOf(';');
+
+		if (index != -1) {
+			fragmentHost = fragmentHost.substring(0, index);
+		}
+
+		return fragmentHost.trim();
+	}
+
+	public JspFragmentTracker(BundleContext bundleContext) {
+		_bundleContext = bundleContext;
+	}
+
+	public void register(
+		String hostSymbolicName, JspFragmentListener jspFragmentListener) {
+
+		BundleTracker<String> bundleTracker = null;
+		ListenerQueue listenerQueue = new ListenerQueue(jspFragmentListener);
+
+		synchronized (this) {
+			List<ListenerQueue> listenerQueues = _listenerQueues.get(
+				hostSymbolicName);
+
+			if (listenerQueues == null) {
+				listenerQueues = new ArrayList<>();
+
+				_listenerQueues.put(hostSymbolicName, listenerQueues);
+			}
+
+			listenerQueues.add(listenerQueue);
+
+			Set<Bundle> fragments = _fragments.get(hostSymbolicName);
+
+			if (fragments != null) {
+				for (Bundle fragment : fragments) {
+					listenerQueue.add(fragment, true);
+				}
+			}
+
+			if (_bundleTracker == null) {
+				_bundleTracker = new BundleTracker<>(
+					_bundleContext, Bundle.RESOLVED,
+					new FragmentBundleTrackerCustomizer());
+
+				bundleTracker = _bundleTracker;
+			}
+		}
+
+		listenerQueue.deliver();
+
+		if (bundleTracker == null) {
+			return;
+		}
+
+		// The first listener opens the tracker, which reports the fragments
+		// that are already resolved through addFragment. Only opening and
+		// closing are serialized so that other servlets can register meanwhile.
+
+		synchronized (_bundleTrackerLock) {
+			synchronized (this) {
+				if (_bundleTracker != bundleTracker) {
+					return;
+				}
+			}
+
+			bundleTracker.open();
+		}
+	}
+
+	public void unregister(
+		String hostSymbolicName, JspFragmentListener jspFragmentListener) {
+
+		BundleTracker<String> bundleTracker = null;
+
+		synchronized (this) {
+			List<ListenerQueue> listenerQueues = _listenerQueues.get(
+				hostSymbolicName);
+
+			if ((listenerQueues == null) ||
+				!_remove(listenerQueues, jspFragmentListener)) {
+
+				return;
+			}
+
+			if (listenerQueues.isEmpty()) {
+				_listenerQueues.remove(hostSymbolicName);
+			}
+
+			if (!_listenerQueues.isEmpty()) {
+				return;
+			}
+
+			bundleTracker = _bundleTracker;
+
+			_bundleTracker = null;
+		}
+
+		// Close the tracker once the last JSP servlet is destroyed so that it
+		// does not outlive the bundle that opened it
+
+		if (bundleTracker != null) {
+			synchronized (_bundleTrackerLock) {
+				bundleTracker.close();
+			}
+		}
+	}
+
+	protected void addFragment(String hostSymbolicName, Bundle fragment) {
+		List<ListenerQueue> listenerQueues = null;
+
+		synchronized (this) {
+			Set<Bundle> fragments = _fragments.get(hostSymbolicName);
+
+			if (fragments == null) {
+				fragments = new LinkedHashSet<>();
+
+				_fragments.put(hostSymbolicName, fragments);
+			}
+
+			if (!fragments.add(fragment)) {
+				return;
+			}
+
+			listenerQueues = _getListenerQueues(
+				hostSymbolicName, fragment, true);
+		}
+
+		for (ListenerQueue listenerQueue : listenerQueues) {
+			listenerQueue.deliver();
+		}
+	}
+
+	protected void removeFragment(String hostSymbolicName, Bundle fragment) {
+		List<ListenerQueue> listenerQueues = null;
+
+		synchronized (this) {
+			Set<Bundle> fragments = _fragments.get(hostSymbolicName);
+
+			if ((fragments == null) || !fragments.remove(fragment)) {
+				return;
+			}
+
+			if (fragments.isEmpty()) {
+				_fragments.remove(hostSymbolicName);
+			}
+
+			listenerQueues = _getListenerQueues(
+				hostSymbolicName, fragment, false);
+		}
+
+		for (ListenerQueue listenerQueue : listenerQueues) {
+			listenerQueue.deliver();
+		}
+	}
+
+	private List<ListenerQueue> _getListenerQueues(
+		String hostSymbolicName, Bundle fragment, boolean added) {
+
+		List<ListenerQueue> listenerQueues = _listenerQueues.get(
+			hostSymbolicName);
+
+		if (listenerQueues == null) {
+			return new ArrayList<>();
+		}
+
+		for (ListenerQueue listenerQueue : listenerQueues) {
+			listenerQueue.add(fragment, added);
+		}
+
+		return new ArrayList<>(listenerQueues);
+	}
+
+	private boolean _remove(
+		List<ListenerQueue> listenerQueues,
+		JspFragmentListener jspFragmentListener) {
+
+		for (int i = 0; i < listenerQueues.size(); i++) {
+			ListenerQueue listenerQueue = listenerQueues.get(i);
+
+			if (listenerQueue._jspFragmentListener == jspFragmentListener) {
+				listenerQueues.remove(i);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private final BundleContext _bundleContext;
+	private BundleTracker<String> _bundleTracker;
+	private final Object _bundleTrackerLock = new Object();
+	private final Map<String, Set<Bundle>> _fragments = new HashMap<>();
+	private final Map<String, List<ListenerQueue>> _listenerQueues =
+		new HashMap<>();
+
+	private static class ListenerQueue {
+
+		public ListenerQueue(JspFragmentListener jspFragmentListener) {
+			_jspFragmentListener = jspFragmentListener;
+		}
+
+		public synchronized void add(Bundle fragment, boolean added) {
+			_fragments.add(fragment);
+			_addeds.add(added);
+		}
+
+		public void deliver() {
+			synchronized (this) {
+				if (_delivering) {
+					return;
+				}
+
+				_delivering = true;
+			}
+
+			boolean delivered = false;
+
+			try {
+				while (true) {
+					Bundle fragment = null;
+					boolean added = false;
+
+					synchronized (this) {
+						fragment = _fragments.poll();
+
+						if (fragment == null) {
+							_delivering = false;
+
+							delivered = true;
+
+							return;
+						}
+
+						added = _addeds.poll();
+					}
+
+					if (added) {
+						_jspFragmentListener.fragmentAdded(fragment);
+					}
+					else {
+						_jspFragmentListener.fragmentRemoved(fragment);
+					}
+				}
+			}
+			finally {
+				if (!delivered) {
+					synchronized (this) {
+						_delivering = false;
+					}
+				}
+			}
+		}
+
+		private final Queue<Boolean> _addeds = new LinkedList<>();
+		private boolean _delivering;
+		private final Queue<Bundle> _fragments = new LinkedList<>();
+		private final JspFragmentListener _jspFragmentListener;
+
+	}
+
+	private class FragmentBundleTrackerCustomizer
+		implements BundleTrackerCustomizer<String> {
+
+		@Override
+		public String addingBundle(Bundle bundle, BundleEvent bundleEvent) {
+			String fragmentHost = getFragmentHost(bundle);
+
+			if (fragmentHost == null) {
+				return null;
+			}
+
+			addFragment(fragmentHost, bundle);
+
+			return fragmentHost;
+		}
+
+		@Override
+		public void modifiedBundle(
+			Bundle bundle, BundleEvent bundleEvent, String fragmentHost) {
+		}
+
+		@Override
+		public void removedBundle(
+			Bundle bundle, BundleEvent bundleEvent, String fragmentHost) {
+
+			removeFragment(fragmentHost, bundle);
+		}
+
+	}
+
+}
@@ -166,6 +166,14 @@ public class JspJavaFileObjectResolver implements JavaFileObjectResolver {
 	protected Collection<JavaFileObject> handleSystemBundle(
 		BundleWiring bundleWiring, String path) {
 
+		int trackingCount = _serviceTracker.getTrackingCount();
+
+		if (_trackingCount != trackingCount) {
+			_javaFileObjects.clear();
+
+			_trackingCount = trackingCount;
+		}
+
 		Collection<JavaFileObject> javaFileObjects = _javaFileObjects.get(path);
 
 		if (javaFileObjects != null) {
@@ -315,11 +323,13 @@ public class JspJavaFileObjectResolver implements JavaFileObjectResolver {
 		return javaFileObjects;
 	}
 
+	private static final Map<String, Collection<JavaFileObject>>
+		_javaFileObjects = new ConcurrentReferenceValueHashMap<>(
+			FinalizeManager.SOFT_REFERENCE_FACTORY);
+	private static volatile int _trackingCount = -1;
+
 	private final BundleWiring _bundleWiring;
 	private final Map<BundleWiring, Set<String>> _bundleWiringPackageNames;
-	private final Map<String, Collection<JavaFileObject>> _javaFileObjects =
-		new ConcurrentReferenceValueHashMap<>(
-			FinalizeManager.SOFT_REFERENCE_FACTORY);
 	private final BundleWiring _jspBundleWiring;
 	private final Logger _logger;
 	private final ServiceTracker<Map<String, List<URL>>, Map<String, List<URL>>>
@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.portal.kernel.util.StringPool;
+import com.liferay.portal.kernel.util.StringUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.URL;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+
+import org.apache.felix.utils.log.Logger;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Installs the JSP classes that a bundle ships precompiled into the scratch
+ * directory of its JSP servlet, so that Jasper loads them instead of compiling
+ * the JSPs again.
+ *
+ * <p>
+ * The classes are read from <code>/META-INF/jsp-precompiled/</code>, laid out
+ * as in the scratch directory. The index
+ * <code>/META-INF/jsp-precompiled/index.properties</code> maps the path of
+ * every source used by the build to the SHA-1 of its content and, for JSPs
+ * and tag files, to the path of the generated class without extension and
+ * optionally to the comma separated sources it includes, for example
+ * <code>/view.jsp=&lt;sha1&gt;:org/apache/jsp/view_jsp:/init.jspf</code>. A
+ * class is only installed when its source and the sources it includes still
+ * hash to the indexed values through the JSP servlet context. A class that
+ * does not list its includes depends on every source without a class. Any
+ * other JSP is left for Jasper to compile.
+ * </p>
+ *
+ * <p>
+ * A class already in the scratch directory is replaced when it differs from
+ * the precompiled one.
+ * </p>
+ *
+ * @author agent
+ */
+public class JspPrecompiledClassInstaller {
+
+	public static final String INDEX = "index.properties";
+
+	public static final String PATH = "/META-INF/jsp-precompiled/";
+
+	public static String digest(InputStream inputStream) throws IOException {
+		MessageDigest messageDigest = null;
+
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException nsae) {
+			throw new IOException(nsae);
+		}
+
+		byte[] buffer = new byte[8192];
+
+		int length = 0;
+
+		while ((length = inputStream.read(buffer)) != -1) {
+			messageDigest.update(buffer, 0, length);
+		}
+
+		byte[] bytes = messageDigest.digest();
+
+		char[] chars = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = _HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = _HEX_DIGITS[bytes[i] & 0xf];
+		}
+
+		return new String(chars);
+	}
+
+	public JspPrecompiledClassInstaller(Bundle bundle, Logger logger) {
+		_bundle = bundle;
+		_logger = logger;
+	}
+
+	public int install(ServletContext servletContext, String scratchDirName) {
+		URL indexURL = _bundle.getEntry(PATH + INDEX);
+
+		if (indexURL == null) {
+			return 0;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream inputStream = indexURL.openStream()) {
+			properties.load(inputStream);
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to read precompiled JSP index of " + _bundle, ioe);
+
+			return 0;
+		}
+
+		List<String[]> classEntries = new ArrayList<>();
+		Map<String, Boolean> matches = new HashMap<>();
+
+		for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+			String path = (String)entry.getKey();
+			String value = (String)entry.getValue();
+
+			String[] parts = value.split(StringPool.COLON, 3);
+
+			matches.put(path, _matches(servletContext, path, parts[0]));
+
+			if (parts.length > 1) {
+				classEntries.add(
+					new String[] {
+						path, parts[1], (parts.length > 2) ? parts[2] : null
+					});
+			}
+		}
+
+		int count = 0;
+
+		for (String[] classEntry : classEntries) {
+			String changedPath = _getChangedPath(
+				classEntry, classEntries, matches);
+
+			if (changedPath != null) {
+				_logger.log(
+					Logger.LOG_DEBUG,
+					"Ignoring precompiled class of " + classEntry[0] +
+						" because " + changedPath + " changed");
+
+				continue;
+			}
+
+			try {
+				if (_install(scratchDirName, classEntry[1])) {
+					count++;
+				}
+			}
+			catch (IOException ioe) {
+				_logger.log(
+					Logger.LOG_WARNING,
+					"Unable to install precompiled class of " + classEntry[0],
+					ioe);
+			}
+		}
+
+		if (count > 0) {
+			_logger.log(
+				Logger.LOG_DEBUG,
+				"Installed " + count + " precompiled JSP classes of " +
+					_bundle);
+		}
+
+		return count;
+	}
+
+	private void _copy(URL url, File file, long lastModified)
+		throws IOException {
+
+		File parentFile = file.getParentFile();
+
+		parentFile.mkdirs();
+
+		try (InputStream inputStream = url.openStream()) {
+			Files.copy(
+				inputStream, file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		file.setLastModified(lastModified);
+	}
+
+	private String _getChangedPath(
+		String[] classEntry, List<String[]> classEntries,
+		Map<String, Boolean> matches) {
+
+		if (!matches.get(classEntry[0])) {
+			return classEntry[0];
+		}
+
+		if (classEntry[2] != null) {
+			for (String path : StringUtil.split(classEntry[2])) {
+				if (!Boolean.TRUE.equals(matches.get(path))) {
+					return path;
+				}
+			}
+
+			return null;
+		}
+
+		Set<String> classPaths = new HashSet<>();
+
+		for (String[] curClassEntry : classEntries) {
+			classPaths.add(curClassEntry[0]);
+		}
+
+		for (Map.Entry<String, Boolean> entry : matches.entrySet()) {
+			if (!entry.getValue() && !classPaths.contains(entry.getKey())) {
+				return entry.getKey();
+			}
+		}
+
+		return null;
+	}
+
+	private boolean _install(String scratchDirName, String classPath)
+		throws IOException {
+
+		URL url = _bundle.getEntry(PATH + classPath + ".class");
+
+		if (url == null) {
+			return false;
+		}
+
+		File classFile = new File(scratchDirName, classPath + ".class");
+
+		if (classFile.exists() && _isSame(url, classFile)) {
+			return false;
+		}
+
+		long lastModified = System.currentTimeMillis();
+
+		int index = classPath.lastIndexOf(StringPool.SLASH);
+
+		Enumeration<URL> enumeration = _bundle.findEntries(
+			PATH + classPath.substring(0, index + 1),
+			classPath.substring(index + 1) + "$*.class", false);
+
+		if (enumeration != null) {
+			for (URL innerClassURL : Collections.list(enumeration)) {
+				String innerClassPath = innerClassURL.getPath();
+
+				innerClassPath = innerClassPath.substring(
+					innerClassPath.lastIndexOf(StringPool.SLASH) + 1);
+
+				File innerClassFile = new File(
+					classFile.getParentFile(), innerClassPath);
+
+				_copy(innerClassURL, innerClassFile, lastModified);
+			}
+		}
+
+		_copy(url, classFile, lastModified);
+
+		return true;
+	}
+
+	private boolean _isSame(URL url, File file) throws IOException {
+		try (InputStream inputStream1 = url.openStream();
+			InputStream inputStream2 = new FileInputStream(file)) {
+
+			return digest(inputStream1).equals(digest(inputStream2));
+		}
+	}
+
+	private boolean _matches(
+		ServletContext servletContext, String path, String digest) {
+
+		try {
+			URL url = servletContext.getResource(path);
+
+			if (url == null) {
+				return false;
+			}
+
+			try (InputStream inputStream = url.openStream()) {
+				return digest.equals(digest(inputStream));
+			}
+		}
+		catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	private static final char[] _HEX_DIGITS = {
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd',
+		'e', 'f'
+	};
+
+	private final Bundle _bundle;
+	private final Logger _logger;
+
+}
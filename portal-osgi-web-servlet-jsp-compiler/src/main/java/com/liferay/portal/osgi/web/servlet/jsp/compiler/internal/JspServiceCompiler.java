@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.osgi.util.ServiceTrackerFactory;
+
+import javax.tools.JavaCompiler;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Compiles JSPs with the highest ranked <code>javax.tools.JavaCompiler</code>
+ * service, for example the Eclipse compiler registered by another bundle, so
+ * that nodes do not need a full JDK. Falls back to the system Java compiler
+ * when no such service is registered. Select it by setting the
+ * <code>compilerClassName</code> init parameter to this class.
+ *
+ * @author agent
+ */
+public class JspServiceCompiler extends JspCompiler {
+
+	@Override
+	protected JavaCompiler getJavaCompiler() {
+		JavaCompiler javaCompiler = _serviceTracker.getService();
+
+		if (javaCompiler != null) {
+			return javaCompiler;
+		}
+
+		return super.getJavaCompiler();
+	}
+
+	private static final ServiceTracker<JavaCompiler, JavaCompiler>
+		_serviceTracker;
+
+	static {
+		Bundle bundle = FrameworkUtil.getBundle(JspServiceCompiler.class);
+
+		_serviceTracker = ServiceTrackerFactory.open(
+			bundle, JavaCompiler.class);
+	}
+
+}
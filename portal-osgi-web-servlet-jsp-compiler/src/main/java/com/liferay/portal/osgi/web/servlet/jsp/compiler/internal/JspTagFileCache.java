@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.liferay.portal.kernel.concurrent.ConcurrentReferenceKeyHashMap;
+import com.liferay.portal.kernel.memory.FinalizeManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Shares the bytecode of tag files compiled from taglib provider bundles
+ * between all JSP bundles that use them. Entries are keyed by the wiring of
+ * the provider bundle, so updating or refreshing the provider discards them,
+ * and by the generated source, so a consumer whose translation differs
+ * compiles its own copy.
+ *
+ * @author agent
+ */
+public class JspTagFileCache {
+
+	public Map<String, byte[]> get(
+		BundleWiring bundleWiring, String className, String source) {
+
+		Map<String, TagFile> tagFiles = _tagFiles.get(bundleWiring);
+
+		if (tagFiles == null) {
+			return null;
+		}
+
+		TagFile tagFile = tagFiles.get(className);
+
+		if ((tagFile == null) || !source.equals(tagFile._source)) {
+			return null;
+		}
+
+		return tagFile._bytecodes;
+	}
+
+	public void put(
+		BundleWiring bundleWiring, String className, String source,
+		Map<String, byte[]> bytecodes) {
+
+		Map<String, TagFile> tagFiles = _tagFiles.get(bundleWiring);
+
+		if (tagFiles == null) {
+			tagFiles = new ConcurrentHashMap<>();
+
+			Map<String, TagFile> previousTagFiles = _tagFiles.putIfAbsent(
+				bundleWiring, tagFiles);
+
+			if (previousTagFiles != null) {
+				tagFiles = previousTagFiles;
+			}
+		}
+
+		tagFiles.put(className, new TagFile(source, bytecodes));
+	}
+
+	private final ConcurrentMap<BundleWiring, Map<String, TagFile>> _tagFiles =
+		new ConcurrentReferenceKeyHashMap<>(
+			FinalizeManager.WEAK_REFERENCE_FACTORY);
+
+	private static class TagFile {
+
+		public TagFile(String source, Map<String, byte[]> bytecodes) {
+			_source = source;
+			_bytecodes = bytecodes;
+		}
+
+		private final Map<String, byte[]> _bytecodes;
+		private final String _source;
+
+	}
+
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jasper.Constants;
+
+/**
+ * Compiles a list of JSPs in the background, in order, by sending Jasper
+ * precompilation requests. A warm-up stops once it has used up its own CPU
+ * budget. It pauses while any JSP servlet is serving a request or while the
+ * system load average reaches the number of processors.
+ *
+ * @author agent
+ */
+public abstract class JspWarmUp implements Runnable {
+
+	public static HttpServletRequest createPrecompileRequest(String path) {
+		return (HttpServletRequest)Proxy.newProxyInstance(
+			JspWarmUp.class.getClassLoader(),
+			new Class<?>[] {HttpServletRequest.class},
+			new PrecompileInvocationHandler(path));
+	}
+
+	public static HttpServletResponse createPrecompileResponse() {
+		return (HttpServletResponse)Proxy.newProxyInstance(
+			JspWarmUp.class.getClassLoader(),
+			new Class<?>[] {HttpServletResponse.class},
+			new PrecompileInvocationHandler(null));
+	}
+
+	public static ScheduledThreadPoolExecutor getScheduledExecutorService() {
+		return _scheduledThreadPoolExecutor;
+	}
+
+	public static void requestFinished() {
+		_activeRequests.decrementAndGet();
+	}
+
+	public static void requestStarted() {
+		_activeRequests.incrementAndGet();
+	}
+
+	public JspWarmUp(List<String> paths, long cpuBudget) {
+		_paths = paths;
+		_cpuBudget = TimeUnit.MILLISECONDS.toNanos(cpuBudget);
+	}
+
+	public void cancel() {
+		_cancelled = true;
+	}
+
+	@Override
+	public void run() {
+		for (String path : _paths) {
+			if (_cancelled || (_spentCpuTime >= _cpuBudget)) {
+				return;
+			}
+
+			_yield();
+
+			long startTime = _getTime();
+
+			try {
+				compile(path);
+			}
+			catch (Exception e) {
+				onError(path, e);
+			}
+			finally {
+				_spentCpuTime += _getTime() - startTime;
+			}
+		}
+	}
+
+	protected abstract void compile(String path) throws Exception;
+
+	protected abstract void onError(String path, Exception e);
+
+	private long _getTime() {
+		if (_threadMXBean.isCurrentThreadCpuTimeSupported()) {
+			return _threadMXBean.getCurrentThreadCpuTime();
+		}
+
+		return System.nanoTime();
+	}
+
+	private boolean _isBusy() {
+		if (_activeRequests.get() > 0) {
+			return true;
+		}
+
+		double systemLoadAverage =
+			_operatingSystemMXBean.getSystemLoadAverage();
+
+		if ((systemLoadAverage >= 0) &&
+			(systemLoadAverage >=
+				_operatingSystemMXBean.getAvailableProcessors())) {
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private void _yield() {
+		for (int i = 0; (i < _YIELD_MAX_ATTEMPTS) && !_cancelled; i++) {
+			if (!_isBusy()) {
+				return;
+			}
+
+			try {
+				Thread.sleep(_YIELD_INTERVAL);
+			}
+			catch (InterruptedException ie) {
+				_cancelled = true;
+
+				Thread currentThread = Thread.currentThread();
+
+				currentThread.interrupt();
+			}
+		}
+	}
+
+	private static final int _YIELD_INTERVAL = 100;
+
+	private static final int _YIELD_MAX_ATTEMPTS = 50;
+
+	private static final AtomicInteger _activeRequests = new AtomicInteger();
+	private static final OperatingSystemMXBean _operatingSystemMXBean =
+		ManagementFactory.getOperatingSystemMXBean();
+	private static final ScheduledThreadPoolExecutor
+		_scheduledThreadPoolExecutor;
+	private static final ThreadMXBean _threadMXBean =
+		ManagementFactory.getThreadMXBean();
+
+	static {
+		_scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(
+			1,
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "JSP Warm Up");
+
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+
+					return thread;
+				}
+
+			});
+
+		_scheduledThreadPoolExecutor.setKeepAliveTime(60, TimeUnit.SECONDS);
+		_scheduledThreadPoolExecutor.allowCoreThreadTimeOut(true);
+		_scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+	}
+
+	private volatile boolean _cancelled;
+	private final long _cpuBudget;
+	private final List<String> _paths;
+	private long _spentCpuTime;
+
+	private static class PrecompileInvocationHandler
+		implements InvocationHandler {
+
+		public PrecompileInvocationHandler(String path) {
+			_path = path;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String methodName = method.getName();
+
+			if (methodName.equals("getAttribute") &&
+				Constants.JSP_FILE.equals(args[0])) {
+
+				return _path;
+			}
+			else if (methodName.equals("getMethod")) {
+				return "GET";
+			}
+			else if (methodName.equals("getQueryString")) {
+				return Constants.PRECOMPILE;
+			}
+			else if (methodName.equals("equals")) {
+				return proxy == args[0];
+			}
+			else if (methodName.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			else if (methodName.equals("toString")) {
+				return "JSP precompile request for " + _path;
+			}
+
+			Class<?> returnType = method.getReturnType();
+
+			if (returnType == boolean.class) {
+				return Boolean.FALSE;
+			}
+			else if (returnType == int.class) {
+				return 0;
+			}
+			else if (returnType == long.class) {
+				return 0L;
+			}
+
+			return null;
+		}
+
+		private final String _path;
+
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads method sizes from class files. HotSpot does not JIT compile methods
+ * whose bytecode is longer than its <code>HugeMethodLimit</code> of 8000
+ * bytes.
+ *
+ * @author agent
+ */
+public class BytecodeUtil {
+
+	public static Map<String, Integer> getHugeMethods(
+			byte[] bytecode, int limit)
+		throws IOException {
+
+		Map<String, Integer> hugeMethods = new LinkedHashMap<>();
+
+		DataInputStream dataInputStream = new DataInputStream(
+			new ByteArrayInputStream(bytecode));
+
+		if (dataInputStream.readInt() != 0xCAFEBABE) {
+			throw new IOException("Invalid class file");
+		}
+
+		dataInputStream.skipBytes(4);
+
+		String[] utf8s = new String[dataInputStream.readUnsignedShort()];
+
+		for (int i = 1; i < utf8s.length; i++) {
+			int tag = dataInputStream.readUnsignedByte();
+
+			if (tag == _CONSTANT_UTF8) {
+				utf8s[i] = dataInputStream.readUTF();
+			}
+			else if ((tag == _CONSTANT_DOUBLE) || (tag == _CONSTANT_LONG)) {
+				dataInputStream.skipBytes(8);
+
+				i++;
+			}
+			else if (tag == _CONSTANT_METHOD_HANDLE) {
+				dataInputStream.skipBytes(3);
+			}
+			else if ((tag == _CONSTANT_CLASS) ||
+					 (tag == _CONSTANT_METHOD_TYPE) ||
+					 (tag == _CONSTANT_MODULE) ||
+					 (tag == _CONSTANT_PACKAGE) ||
+					 (tag == _CONSTANT_STRING)) {
+
+				dataInputStream.skipBytes(2);
+			}
+			else {
+				dataInputStream.skipBytes(4);
+			}
+		}
+
+		dataInputStream.skipBytes(6);
+
+		dataInputStream.skipBytes(dataInputStream.readUnsignedShort() * 2);
+
+		int fieldsCount = dataInputStream.readUnsignedShort();
+
+		for (int i = 0; i < fieldsCount; i++) {
+			dataInputStream.skipBytes(6);
+
+			_skipAttributes(dataInputStream);
+		}
+
+		int methodsCount = dataInputStream.readUnsignedShort();
+
+		for (int i = 0; i < methodsCount; i++) {
+			dataInputStream.skipBytes(2);
+
+			String name = utf8s[dataInputStream.readUnsignedShort()];
+			String descriptor = utf8s[dataInputStream.readUnsignedShort()];
+
+			int attributesCount = dataInputStream.readUnsignedShort();
+
+			for (int j = 0; j < attributesCount; j++) {
+				String attributeName =
+					utf8s[dataInputStream.readUnsignedShort()];
+				int attributeLength = dataInputStream.readInt();
+
+				if (!attributeName.equals("Code")) {
+					dataInputStream.skipBytes(attributeLength);
+
+					continue;
+				}
+
+				dataInputStream.skipBytes(4);
+
+				int codeLength = dataInputStream.readInt();
+
+				if (codeLength > limit) {
+					hugeMethods.put(name.concat(descriptor), codeLength);
+				}
+
+				dataInputStream.skipBytes(attributeLength - 8);
+			}
+		}
+
+		return hugeMethods;
+	}
+
+	private static void _skipAttributes(DataInputStream dataInputStream)
+		throws IOException {
+
+		int attributesCount = dataInputStream.readUnsignedShort();
+
+		for (int i = 0; i < attributesCount; i++) {
+			dataInputStream.skipBytes(2);
+
+			dataInputStream.skipBytes(dataInputStream.readInt());
+		}
+	}
+
+	private static final int _CONSTANT_CLASS = 7;
+
+	private static final int _CONSTANT_DOUBLE = 6;
+
+	private static final int _CONSTANT_LONG = 5;
+
+	private static final int _CONSTANT_METHOD_HANDLE = 15;
+
+	private static final int _CONSTANT_METHOD_TYPE = 16;
+
+	private static final int _CONSTANT_MODULE = 19;
+
+	private static final int _CONSTANT_PACKAGE = 20;
+
+	private static final int _CONSTANT_STRING = 8;
+
+	private static final int _CONSTANT_UTF8 = 1;
+
+}
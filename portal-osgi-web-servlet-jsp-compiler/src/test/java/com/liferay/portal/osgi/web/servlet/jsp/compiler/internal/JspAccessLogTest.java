@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import java.io.File;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent
+ */
+public class JspAccessLogTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testGetTopPaths() {
+		JspAccessLog jspAccessLog = new JspAccessLog(
+			new File(temporaryFolder.getRoot(), "access.properties"), 10);
+
+		jspAccessLog.record("/b.jsp");
+		jspAccessLog.record("/a.jsp");
+		jspAccessLog.record("/c.jsp");
+		jspAccessLog.record("/c.jsp");
+
+		Assert.assertEquals(
+			Arrays.asList("/c.jsp", "/a.jsp"), jspAccessLog.getTopPaths(2));
+	}
+
+	@Test
+	public void testRecordIsBounded() {
+		JspAccessLog jspAccessLog = new JspAccessLog(
+			new File(temporaryFolder.getRoot(), "access.properties"), 1);
+
+		jspAccessLog.record("/a.jsp");
+		jspAccessLog.record("/b.jsp");
+		jspAccessLog.record("/c.jsp");
+
+		Assert.assertEquals(
+			Arrays.asList("/a.jsp", "/b.jsp"), jspAccessLog.getTopPaths(10));
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "warm-up/a.properties");
+
+		JspAccessLog jspAccessLog = new JspAccessLog(file, 1);
+
+		jspAccessLog.record("/a.jsp");
+		jspAccessLog.record("/b.jsp");
+		jspAccessLog.record("/b.jsp");
+
+		jspAccessLog.store();
+
+		jspAccessLog = new JspAccessLog(file, 1);
+
+		jspAccessLog.load();
+
+		Assert.assertEquals(
+			Arrays.asList("/b.jsp"), jspAccessLog.getTopPaths(10));
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import org.apache.jasper.compiler.JavacErrorDetail;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.mockito.Mockito;
+
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * @author agent
+ */
+public class JspCompileFailureCacheTest {
+
+	@Test
+	public void testBackoffElapsed() {
+		JspCompileFailureCache jspCompileFailureCache =
+			new JspCompileFailureCache(0, 0);
+
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, _SOURCE, _javacErrorDetails);
+
+		Assert.assertNull(
+			jspCompileFailureCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+	}
+
+	@Test
+	public void testFailureCount() {
+		JspCompileFailureCache jspCompileFailureCache =
+			new JspCompileFailureCache(_BACKOFF, _BACKOFF);
+
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, _SOURCE, _javacErrorDetails);
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, _SOURCE, _javacErrorDetails);
+
+		Assert.assertEquals(
+			2,
+			jspCompileFailureCache.getFailureCount(_bundleWiring, _CLASS_NAME));
+
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, "changed", _javacErrorDetails);
+
+		Assert.assertEquals(
+			1,
+			jspCompileFailureCache.getFailureCount(_bundleWiring, _CLASS_NAME));
+	}
+
+	@Test
+	public void testGet() {
+		JspCompileFailureCache jspCompileFailureCache =
+			new JspCompileFailureCache(_BACKOFF, _BACKOFF);
+
+		Assert.assertNull(
+			jspCompileFailureCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, _SOURCE, _javacErrorDetails);
+
+		Assert.assertSame(
+			_javacErrorDetails,
+			jspCompileFailureCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+		Assert.assertNull(
+			jspCompileFailureCache.get(_bundleWiring, _CLASS_NAME, "changed"));
+		Assert.assertNull(
+			jspCompileFailureCache.get(
+				Mockito.mock(BundleWiring.class), _CLASS_NAME, _SOURCE));
+	}
+
+	@Test
+	public void testRemove() {
+		JspCompileFailureCache jspCompileFailureCache =
+			new JspCompileFailureCache(_BACKOFF, _BACKOFF);
+
+		jspCompileFailureCache.put(
+			_bundleWiring, _CLASS_NAME, _SOURCE, _javacErrorDetails);
+
+		jspCompileFailureCache.remove(_bundleWiring, _CLASS_NAME);
+
+		Assert.assertNull(
+			jspCompileFailureCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+		Assert.assertEquals(
+			0,
+			jspCompileFailureCache.getFailureCount(_bundleWiring, _CLASS_NAME));
+	}
+
+	private static final long _BACKOFF = 60 * 1000;
+
+	private static final String _CLASS_NAME = "org.apache.jsp.view_jsp";
+
+	private static final String _SOURCE = "source";
+
+	private final BundleWiring _bundleWiring = Mockito.mock(
+		BundleWiring.class);
+	private final JavacErrorDetail[] _javacErrorDetails = {
+		new JavacErrorDetail("view_jsp.java", 1, new StringBuilder("error"))
+	};
+
+}
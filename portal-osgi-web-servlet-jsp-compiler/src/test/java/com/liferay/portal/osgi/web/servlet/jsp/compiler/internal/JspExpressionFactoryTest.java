@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import com.sun.el.ExpressionFactoryImpl;
+
+import javax.el.BeanELResolver;
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.FunctionMapper;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+
+import org.apache.jasper.runtime.ELContextImpl;
+import org.apache.jasper.runtime.VariableMapperImpl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class JspExpressionFactoryTest {
+
+	@Test
+	public void testCreateValueExpression() {
+		long hitCount = JspExpressionFactory.getHitCount();
+
+		ValueExpression valueExpression =
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${1 + 2}", Integer.class);
+
+		Assert.assertSame(
+			valueExpression,
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${1 + 2}", Integer.class));
+		Assert.assertEquals(hitCount + 1, JspExpressionFactory.getHitCount());
+		Assert.assertEquals(3, valueExpression.getValue(_elContext));
+
+		Assert.assertNotSame(
+			valueExpression,
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${1 + 2}", String.class));
+	}
+
+	@Test
+	public void testCreateValueExpressionWithJasperELContext() {
+		ELContextImpl elContextImpl = new ELContextImpl(new BeanELResolver());
+
+		elContextImpl.setVariableMapper(new VariableMapperImpl());
+
+		long hitCount = JspExpressionFactory.getHitCount();
+
+		ValueExpression valueExpression =
+			_jspExpressionFactory.createValueExpression(
+				elContextImpl, "${2 * 3}", Long.class);
+
+		Assert.assertSame(
+			valueExpression,
+			_jspExpressionFactory.createValueExpression(
+				elContextImpl, "${2 * 3}", Long.class));
+		Assert.assertEquals(hitCount + 1, JspExpressionFactory.getHitCount());
+		Assert.assertEquals(6L, valueExpression.getValue(elContextImpl));
+	}
+
+	@Test
+	public void testCreateValueExpressionWithMappedVariable() {
+		ELContextImpl elContextImpl = new ELContextImpl(new BeanELResolver());
+
+		VariableMapper variableMapper = new VariableMapperImpl();
+
+		ExpressionFactoryImpl expressionFactoryImpl =
+			new ExpressionFactoryImpl();
+
+		variableMapper.setVariable(
+			"a", expressionFactoryImpl.createValueExpression(1L, Long.class));
+
+		elContextImpl.setVariableMapper(variableMapper);
+
+		ValueExpression valueExpression =
+			_jspExpressionFactory.createValueExpression(
+				elContextImpl, "${a + 1}", Long.class);
+
+		Assert.assertNotSame(
+			valueExpression,
+			_jspExpressionFactory.createValueExpression(
+				elContextImpl, "${a + 1}", Long.class));
+		Assert.assertEquals(2L, valueExpression.getValue(elContextImpl));
+	}
+
+	@Test
+	public void testCreateValueExpressionWithParentheses() {
+		Assert.assertNotSame(
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${'a'.concat('b')}", String.class),
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${'a'.concat('b')}", String.class));
+	}
+
+	@Test
+	public void testCreateValueExpressionWithNonbootstrapType() {
+		Assert.assertNotSame(
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${null}", JspExpressionFactoryTest.class),
+			_jspExpressionFactory.createValueExpression(
+				_elContext, "${null}", JspExpressionFactoryTest.class));
+	}
+
+	private final ELContext _elContext = new ELContext() {
+
+		@Override
+		public ELResolver getELResolver() {
+			return _elResolver;
+		}
+
+		@Override
+		public FunctionMapper getFunctionMapper() {
+			return null;
+		}
+
+		@Override
+		public VariableMapper getVariableMapper() {
+			return null;
+		}
+
+		private final ELResolver _elResolver = new BeanELResolver();
+
+	};
+
+	private final JspExpressionFactory _jspExpressionFactory =
+		new JspExpressionFactory(new ExpressionFactoryImpl());
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.URI;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.Properties;
+
+import javax.servlet.ServletContext;
+
+import org.apache.felix.utils.log.Logger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mockito.Mockito;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * @author agent
+ */
+public class JspPrecompiledClassInstallerTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+		_scratchDir = temporaryFolder.newFolder("scratch");
+
+		URL jspURL = _write("view.jsp", _JSP);
+
+		Mockito.when(
+			_bundle.getEntry(
+				JspPrecompiledClassInstaller.PATH +
+					"org/apache/jsp/view_jsp.class")
+		).thenReturn(
+			_write("view_jsp.class", "bytecode")
+		);
+
+		Mockito.when(
+			_servletContext.getResource("/view.jsp")
+		).thenReturn(
+			jspURL
+		);
+	}
+
+	@Test
+	public void testInstall() throws Exception {
+		_setIndex("/view.jsp=" + _digest(_JSP) + ":org/apache/jsp/view_jsp");
+
+		Assert.assertEquals(1, _install());
+
+		File classFile = new File(_scratchDir, "org/apache/jsp/view_jsp.class");
+
+		Assert.assertTrue(classFile.exists());
+		Assert.assertEquals(0, _install());
+	}
+
+	@Test
+	public void testInstallWithBuiltIndex() throws Exception {
+		Properties properties = new Properties();
+
+		properties.setProperty("/init.jspf", _digest("init"));
+		properties.setProperty(
+			"/view.jsp", _digest(_JSP) + ":org/apache/jsp/view_jsp:/init.jspf");
+
+		File indexFile = temporaryFolder.newFile("built.properties");
+
+		try (OutputStream outputStream = new FileOutputStream(indexFile)) {
+			properties.store(outputStream, null);
+		}
+
+		URI uri = indexFile.toURI();
+
+		Mockito.when(
+			_bundle.getEntry(
+				JspPrecompiledClassInstaller.PATH +
+					JspPrecompiledClassInstaller.INDEX)
+		).thenReturn(
+			uri.toURL()
+		);
+
+		Mockito.when(
+			_servletContext.getResource("/init.jspf")
+		).thenReturn(
+			_write("init.jspf", "init")
+		);
+
+		Assert.assertEquals(1, _install());
+	}
+
+	@Test
+	public void testInstallWithChangedFragment() throws Exception {
+		_setIndex(
+			"/init.jspf=" + _digest("old") + "\n/view.jsp=" + _digest(_JSP) +
+				":org/apache/jsp/view_jsp");
+
+		Mockito.when(
+			_servletContext.getResource("/init.jspf")
+		).thenReturn(
+			_write("init.jspf", "new")
+		);
+
+		Assert.assertEquals(0, _install());
+	}
+
+	@Test
+	public void testInstallWithChangedIncludedFragment() throws Exception {
+		_setIndex(
+			"/init.jspf=" + _digest("old") + "\n/view.jsp=" + _digest(_JSP) +
+				":org/apache/jsp/view_jsp:/init.jspf");
+
+		Mockito.when(
+			_servletContext.getResource("/init.jspf")
+		).thenReturn(
+			_write("init.jspf", "new")
+		);
+
+		Assert.assertEquals(0, _install());
+	}
+
+	@Test
+	public void testInstallWithChangedJsp() throws Exception {
+		_setIndex("/view.jsp=" + _digest("old") + ":org/apache/jsp/view_jsp");
+
+		Assert.assertEquals(0, _install());
+	}
+
+	@Test
+	public void testInstallWithChangedUnrelatedFragment() throws Exception {
+		_setIndex(
+			"/other.jspf=" + _digest("old") + "\n/view.jsp=" + _digest(_JSP) +
+				":org/apache/jsp/view_jsp:");
+
+		Mockito.when(
+			_servletContext.getResource("/other.jspf")
+		).thenReturn(
+			_write("other.jspf", "new")
+		);
+
+		Assert.assertEquals(1, _install());
+	}
+
+	@Test
+	public void testInstallWithStaleClass() throws Exception {
+		_setIndex("/view.jsp=" + _digest(_JSP) + ":org/apache/jsp/view_jsp");
+
+		File classFile = new File(_scratchDir, "org/apache/jsp/view_jsp.class");
+
+		File parentFile = classFile.getParentFile();
+
+		parentFile.mkdirs();
+
+		Files.write(
+			classFile.toPath(), "stale".getBytes(StandardCharsets.UTF_8));
+
+		Assert.assertEquals(1, _install());
+		Assert.assertEquals(
+			"bytecode",
+			new String(
+				Files.readAllBytes(classFile.toPath()),
+				StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testInstallWithoutIndex() {
+		Assert.assertEquals(0, _install());
+	}
+
+	private String _digest(String content) throws IOException {
+		return JspPrecompiledClassInstaller.digest(
+			new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private int _install() {
+		JspPrecompiledClassInstaller jspPrecompiledClassInstaller =
+			new JspPrecompiledClassInstaller(
+				_bundle, Mockito.mock(Logger.class));
+
+		return jspPrecompiledClassInstaller.install(
+			_servletContext, _scratchDir.getPath());
+	}
+
+	private void _setIndex(String index) throws IOException {
+		Mockito.when(
+			_bundle.getEntry(
+				JspPrecompiledClassInstaller.PATH +
+					JspPrecompiledClassInstaller.INDEX)
+		).thenReturn(
+			_write("index.properties", index)
+		);
+	}
+
+	private URL _write(String fileName, String content) throws IOException {
+		File file = temporaryFolder.newFile(fileName);
+
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+		URI uri = file.toURI();
+
+		return uri.toURL();
+	}
+
+	private static final String _JSP = "<%@ page import=\"java.util.List\" %>";
+
+	private final Bundle _bundle = Mockito.mock(Bundle.class);
+	private File _scratchDir;
+	private final ServletContext _servletContext = Mockito.mock(
+		ServletContext.class);
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.mockito.Mockito;
+
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * @author agent
+ */
+public class JspTagFileCacheTest {
+
+	@Test
+	public void testGet() {
+		JspTagFileCache jspTagFileCache = new JspTagFileCache();
+
+		Assert.assertNull(
+			jspTagFileCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+
+		jspTagFileCache.put(_bundleWiring, _CLASS_NAME, _SOURCE, _bytecodes);
+
+		Assert.assertSame(
+			_bytecodes,
+			jspTagFileCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+		Assert.assertNull(
+			jspTagFileCache.get(_bundleWiring, _CLASS_NAME, "changed"));
+		Assert.assertNull(
+			jspTagFileCache.get(
+				_bundleWiring, "org.apache.jsp.tag.meta.other_tag", _SOURCE));
+		Assert.assertNull(
+			jspTagFileCache.get(
+				Mockito.mock(BundleWiring.class), _CLASS_NAME, _SOURCE));
+	}
+
+	@Test
+	public void testPutReplaces() {
+		JspTagFileCache jspTagFileCache = new JspTagFileCache();
+
+		jspTagFileCache.put(_bundleWiring, _CLASS_NAME, _SOURCE, _bytecodes);
+
+		Map<String, byte[]> bytecodes = Collections.singletonMap(
+			_CLASS_NAME, new byte[0]);
+
+		jspTagFileCache.put(_bundleWiring, _CLASS_NAME, "changed", bytecodes);
+
+		Assert.assertNull(
+			jspTagFileCache.get(_bundleWiring, _CLASS_NAME, _SOURCE));
+		Assert.assertSame(
+			bytecodes,
+			jspTagFileCache.get(_bundleWiring, _CLASS_NAME, "changed"));
+	}
+
+	private static final String _CLASS_NAME =
+		"org.apache.jsp.tag.meta.liferay_002dui.icon_tag";
+
+	private static final String _SOURCE = "source";
+
+	private final BundleWiring _bundleWiring = Mockito.mock(
+		BundleWiring.class);
+	private final Map<String, byte[]> _bytecodes = Collections.singletonMap(
+		_CLASS_NAME, new byte[] {1, 2, 3});
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.servlet.jsp.compiler.internal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class BytecodeUtilTest {
+
+	@Test
+	public void testGetHugeMethods() throws Exception {
+		byte[] bytecode = _getBytecode(BytecodeUtil.class);
+
+		Map<String, Integer> hugeMethods = BytecodeUtil.getHugeMethods(
+			bytecode, 0);
+
+		Assert.assertTrue(
+			hugeMethods.containsKey("getHugeMethods([BI)Ljava/util/Map;"));
+		Assert.assertTrue(
+			hugeMethods.containsKey(
+				"_skipAttributes(Ljava/io/DataInputStream;)V"));
+
+		hugeMethods = BytecodeUtil.getHugeMethods(bytecode, 8000);
+
+		Assert.assertTrue(hugeMethods.isEmpty());
+	}
+
+	@Test(expected = IOException.class)
+	public void testGetHugeMethodsWithInvalidClassFile() throws Exception {
+		BytecodeUtil.getHugeMethods(new byte[] {0, 0, 0, 0}, 0);
+	}
+
+	private byte[] _getBytecode(Class<?> clazz) throws Exception {
+		String name = clazz.getName();
+
+		ClassLoader classLoader = clazz.getClassLoader();
+
+		try (InputStream inputStream = classLoader.getResourceAsStream(
+				name.replace('.', '/') + ".class")) {
+
+			ByteArrayOutputStream byteArrayOutputStream =
+				new ByteArrayOutputStream();
+
+			byte[] buffer = new byte[4096];
+			int length = 0;
+
+			while ((length = inputStream.read(buffer)) != -1) {
+				byteArrayOutputStream.write(buffer, 0, length);
+			}
+
+			return byteArrayOutputStream.toByteArray();
+		}
+	}
+
+}
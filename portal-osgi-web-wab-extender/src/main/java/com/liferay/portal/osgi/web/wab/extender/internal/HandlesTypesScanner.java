@@ -0,0 +1,562 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.wab.extender.internal;
+
+import com.liferay.portal.kernel.util.ArrayUtil;
+
+import java.io.InputStream;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.net.URL;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.felix.utils.log.Logger;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Finds the classes of a bundle that match the types of a
+ * <code>HandlesTypes</code> annotation by reading their class files, so that
+ * only matching classes are loaded. The class files of the bundle are read
+ * once and shared by all the servlet container initializers of the bundle.
+ * Supertypes outside of the bundle are read through the bundle's class loader
+ * resources. A class whose class file or supertypes cannot be read is loaded
+ * and matched by reflection instead.
+ *
+ * <p>
+ * The class files are read in parallel by a fork join pool that is shared by
+ * all the bundles being deployed, so that concurrent deployments use no more
+ * threads than there are processors. Matches are returned in class name order
+ * regardless of how the work was split.
+ * </p>
+ *
+ * @author agent
+ */
+public class HandlesTypesScanner {
+
+	public HandlesTypesScanner(
+		Bundle bundle, ForkJoinPool forkJoinPool, Logger logger) {
+
+		_bundle = bundle;
+		_forkJoinPool = forkJoinPool;
+		_logger = logger;
+	}
+
+	public Set<Class<?>> getHandledClasses(Class<?>[] handledTypes) {
+		if (handledTypes.length == 0) {
+			return Collections.emptySet();
+		}
+
+		_scan();
+
+		Set<String> annotationNames = new HashSet<>();
+		Set<String> inheritedAnnotationNames = new HashSet<>();
+		Set<String> typeNames = new HashSet<>();
+
+		for (Class<?> handledType : handledTypes) {
+			String name = Type.getInternalName(handledType);
+
+			if (handledType.isAnnotation()) {
+				annotationNames.add(name);
+
+				if (handledType.isAnnotationPresent(Inherited.class)) {
+					inheritedAnnotationNames.add(name);
+				}
+			}
+
+			typeNames.add(name);
+		}
+
+		Map<String, Boolean> assignables = new HashMap<>();
+		Set<Class<?>> handledClasses = new LinkedHashSet<>();
+
+		for (String className : _classNames) {
+			ClassInfo classInfo = _getClassInfo(className);
+
+			Boolean matches = null;
+
+			if (classInfo != null) {
+				matches = _matches(
+					classInfo, annotationNames, inheritedAnnotationNames,
+					typeNames, assignables);
+
+				if (Boolean.FALSE.equals(matches)) {
+					continue;
+				}
+			}
+
+			Class<?> clazz = null;
+
+			try {
+				clazz = _bundle.loadClass(className.replace('/', '.'));
+			}
+			catch (Throwable t) {
+				_logger.log(Logger.LOG_DEBUG, t.getMessage());
+
+				continue;
+			}
+
+			if ((matches != null) || _matches(clazz, handledTypes)) {
+				handledClasses.add(clazz);
+			}
+		}
+
+		return handledClasses;
+	}
+
+	private static boolean _containsAny(
+		Set<String> names1, Set<String> names2) {
+
+		if (names1.isEmpty() || names2.isEmpty()) {
+			return false;
+		}
+
+		for (String name : names1) {
+			if (names2.contains(name)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean _containsAny(
+		Annotation[] annotations, Class<?>[] handledTypes) {
+
+		for (Annotation annotation : annotations) {
+			if (ArrayUtil.contains(handledTypes, annotation.annotationType())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private ClassInfo _getClassInfo(String className) {
+		ClassInfo classInfo = _classInfos.get(className);
+
+		if (classInfo != null) {
+			if (classInfo == _NULL_CLASS_INFO) {
+				return null;
+			}
+
+			return classInfo;
+		}
+
+		URL url = _bundle.getResource(className.concat(".class"));
+
+		if (url != null) {
+			try (InputStream inputStream = url.openStream()) {
+				ClassReader classReader = new ClassReader(inputStream);
+
+				ClassInfoVisitor classInfoVisitor = new ClassInfoVisitor();
+
+				classReader.accept(
+					classInfoVisitor,
+					ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG |
+						ClassReader.SKIP_FRAMES);
+
+				classInfo = classInfoVisitor.getClassInfo();
+			}
+			catch (Exception e) {
+				_logger.log(
+					Logger.LOG_DEBUG, "Unable to read class " + className, e);
+			}
+		}
+
+		if (classInfo == null) {
+			_classInfos.putIfAbsent(className, _NULL_CLASS_INFO);
+
+			return null;
+		}
+
+		_classInfos.putIfAbsent(className, classInfo);
+
+		return classInfo;
+	}
+
+	private boolean _hasInheritedAnnotation(
+		ClassInfo classInfo, Set<String> inheritedAnnotationNames) {
+
+		String superName = classInfo._superName;
+
+		while (superName != null) {
+			ClassInfo superClassInfo = _getClassInfo(superName);
+
+			if (superClassInfo == null) {
+				return false;
+			}
+
+			if (_containsAny(
+					superClassInfo._annotationNames,
+					inheritedAnnotationNames)) {
+
+				return true;
+			}
+
+			superName = superClassInfo._superName;
+		}
+
+		return false;
+	}
+
+	private boolean _isAssignable(Class<?> clazz, Class<?>[] handledTypes) {
+		for (Class<?> handledType : handledTypes) {
+			if (handledType.isAssignableFrom(clazz)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Boolean _isAssignable(
+		String className, Set<String> typeNames,
+		Map<String, Boolean> assignables) {
+
+		if (typeNames.contains(className)) {
+			return Boolean.TRUE;
+		}
+
+		if (assignables.containsKey(className)) {
+			return assignables.get(className);
+		}
+
+		assignables.put(className, Boolean.FALSE);
+
+		ClassInfo classInfo = _getClassInfo(className);
+
+		Boolean assignable = null;
+
+		if (classInfo != null) {
+			assignable = Boolean.FALSE;
+
+			Set<String> superNames = new HashSet<>();
+
+			if (classInfo._superName != null) {
+				superNames.add(classInfo._superName);
+			}
+
+			Collections.addAll(superNames, classInfo._interfaceNames);
+
+			for (String superName : superNames) {
+				Boolean superAssignable = _isAssignable(
+					superName, typeNames, assignables);
+
+				if (superAssignable == null) {
+					assignable = null;
+				}
+				else if (superAssignable) {
+					assignable = Boolean.TRUE;
+
+					break;
+				}
+			}
+		}
+
+		assignables.put(className, assignable);
+
+		return assignable;
+	}
+
+	private boolean _matches(Class<?> clazz, Class<?>[] handledTypes) {
+		if (!Modifier.isAbstract(clazz.getModifiers()) &&
+			_isAssignable(clazz, handledTypes)) {
+
+			return true;
+		}
+
+		try {
+			if (_containsAny(clazz.getAnnotations(), handledTypes)) {
+				return true;
+			}
+
+			for (Field field : clazz.getDeclaredFields()) {
+				if (_containsAny(field.getDeclaredAnnotations(), handledTypes)) {
+					return true;
+				}
+			}
+
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (_containsAny(
+						method.getDeclaredAnnotations(), handledTypes)) {
+
+					return true;
+				}
+			}
+		}
+		catch (Throwable t) {
+			_logger.log(Logger.LOG_DEBUG, t.getMessage());
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns <code>TRUE</code> if the class matches, <code>FALSE</code> if it
+	 * does not, and <code>null</code> if it can only be matched by loading it
+	 * because one of its supertypes cannot be read.
+	 */
+	private Boolean _matches(
+		ClassInfo classInfo, Set<String> annotationNames,
+		Set<String> inheritedAnnotationNames, Set<String> typeNames,
+		Map<String, Boolean> assignables) {
+
+		if (_containsAny(classInfo._annotationNames, annotationNames) ||
+			_containsAny(classInfo._memberAnnotationNames, annotationNames)) {
+
+			return Boolean.TRUE;
+		}
+
+		if (!inheritedAnnotationNames.isEmpty() &&
+			_hasInheritedAnnotation(classInfo, inheritedAnnotationNames)) {
+
+			return Boolean.TRUE;
+		}
+
+		if ((classInfo._access & Opcodes.ACC_ABSTRACT) != 0) {
+			return Boolean.FALSE;
+		}
+
+		return _isAssignable(classInfo._name, typeNames, assignables);
+	}
+
+	private synchronized void _scan() {
+		if (_classNames != null) {
+			return;
+		}
+
+		BundleWiring bundleWiring = _bundle.adapt(BundleWiring.class);
+
+		Collection<String> classResources = bundleWiring.listResources(
+			"/", "*.class", BundleWiring.LISTRESOURCES_RECURSE);
+
+		if (classResources == null) {
+			_classNames = Collections.emptyList();
+
+			return;
+		}
+
+		Set<String> classNames = new HashSet<>();
+
+		for (String classResource : classResources) {
+			classNames.add(
+				classResource.substring(
+					0, classResource.length() - _CLASS_EXTENSION_LENGTH));
+		}
+
+		List<String> sortedClassNames = new ArrayList<>(classNames);
+
+		Collections.sort(sortedClassNames);
+
+		_forkJoinPool.invoke(
+			new ClassInfoAction(sortedClassNames, 0, sortedClassNames.size()));
+
+		_classNames = sortedClassNames;
+	}
+
+	private static final int _CLASS_EXTENSION_LENGTH = ".class".length();
+
+	private static final int _CLASS_INFO_ACTION_THRESHOLD = 256;
+
+	private static final ClassInfo _NULL_CLASS_INFO = new ClassInfo(
+		0, null, null, new String[0], Collections.<String>emptySet(),
+		Collections.<String>emptySet());
+
+	private final Bundle _bundle;
+	private final Map<String, ClassInfo> _classInfos =
+		new ConcurrentHashMap<>();
+	private volatile List<String> _classNames;
+	private final ForkJoinPool _forkJoinPool;
+	private final Logger _logger;
+
+	private static class ClassInfo {
+
+		public ClassInfo(
+			int access, String name, String superName, String[] interfaceNames,
+			Set<String> annotationNames, Set<String> memberAnnotationNames) {
+
+			_access = access;
+			_name = name;
+			_superName = superName;
+			_interfaceNames = interfaceNames;
+			_annotationNames = annotationNames;
+			_memberAnnotationNames = memberAnnotationNames;
+		}
+
+		private final int _access;
+		private final Set<String> _annotationNames;
+		private final String[] _interfaceNames;
+		private final Set<String> _memberAnnotationNames;
+		private final String _name;
+		private final String _superName;
+
+	}
+
+	private class ClassInfoAction extends RecursiveAction {
+
+		public ClassInfoAction(List<String> classNames, int start, int end) {
+			_classNames = classNames;
+			_start = start;
+			_end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if ((_end - _start) <= _CLASS_INFO_ACTION_THRESHOLD) {
+				for (int i = _start; i < _end; i++) {
+					_getClassInfo(_classNames.get(i));
+				}
+
+				return;
+			}
+
+			int middle = (_start + _end) >>> 1;
+
+			invokeAll(
+				new ClassInfoAction(_classNames, _start, middle),
+				new ClassInfoAction(_classNames, middle, _end));
+		}
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> _classNames;
+		private final int _end;
+		private final int _start;
+
+	}
+
+	private static class ClassInfoVisitor extends ClassVisitor {
+
+		public ClassInfoVisitor() {
+			super(Opcodes.ASM5);
+		}
+
+		public ClassInfo getClassInfo() {
+			String[] interfaceNames = _interfaceNames;
+
+			if (interfaceNames == null) {
+				interfaceNames = new String[0];
+			}
+
+			return new ClassInfo(
+				_access, _name, _superName, interfaceNames, _annotationNames,
+				_memberAnnotationNames);
+		}
+
+		@Override
+		public void visit(
+			int version, int access, String name, String signature,
+			String superName, String[] interfaceNames) {
+
+			_access = access;
+			_name = name;
+			_superName = superName;
+			_interfaceNames = interfaceNames;
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+			if (visible) {
+				_annotationNames.add(_getInternalName(desc));
+			}
+
+			return null;
+		}
+
+		@Override
+		public FieldVisitor visitField(
+			int access, String name, String desc, String signature,
+			Object value) {
+
+			return new FieldVisitor(Opcodes.ASM5) {
+
+				@Override
+				public AnnotationVisitor visitAnnotation(
+					String desc, boolean visible) {
+
+					if (visible) {
+						_memberAnnotationNames.add(_getInternalName(desc));
+					}
+
+					return null;
+				}
+
+			};
+		}
+
+		@Override
+		public MethodVisitor visitMethod(
+			int access, String name, String desc, String signature,
+			String[] exceptions) {
+
+			return new MethodVisitor(Opcodes.ASM5) {
+
+				@Override
+				public AnnotationVisitor visitAnnotation(
+					String desc, boolean visible) {
+
+					if (visible) {
+						_memberAnnotationNames.add(_getInternalName(desc));
+					}
+
+					return null;
+				}
+
+			};
+		}
+
+		private String _getInternalName(String desc) {
+			Type type = Type.getType(desc);
+
+			return type.getInternalName();
+		}
+
+		private int _access;
+		private final Set<String> _annotationNames = new HashSet<>();
+		private String[] _interfaceNames;
+		private final Set<String> _memberAnnotationNames = new HashSet<>();
+		private String _name;
+		private String _superName;
+
+	}
+
+}
@@ -14,8 +14,8 @@
 
 package com.liferay.portal.osgi.web.wab.extender.internal;
 
-import com.liferay.portal.kernel.util.ArrayUtil;
 import com.liferay.portal.kernel.util.ReflectionUtil;
+import com.liferay.portal.kernel.util.StringPool;
 import com.liferay.portal.kernel.util.StringUtil;
 import com.liferay.portal.osgi.web.servlet.context.helper.ServletContextHelperRegistration;
 import com.liferay.portal.osgi.web.servlet.context.helper.definition.FilterDefinition;
@@ -24,33 +24,48 @@ import com.liferay.portal.osgi.web.servlet.context.helper.definition.ServletDefi
 import com.liferay.portal.osgi.web.servlet.context.helper.definition.WebXMLDefinition;
 import com.liferay.portal.osgi.web.servlet.jsp.compiler.JspServlet;
 import com.liferay.portal.osgi.web.wab.extender.internal.adapter.FilterExceptionAdapter;
+import com.liferay.portal.osgi.web.wab.extender.internal.adapter.LazyServletAdapter;
 import com.liferay.portal.osgi.web.wab.extender.internal.adapter.ModifiableServletContext;
 import com.liferay.portal.osgi.web.wab.extender.internal.adapter.ModifiableServletContextAdapter;
 import com.liferay.portal.osgi.web.wab.extender.internal.adapter.ServletContextListenerExceptionAdapter;
 import com.liferay.portal.osgi.web.wab.extender.internal.adapter.ServletExceptionAdapter;
+import com.liferay.portal.osgi.web.wab.extender.internal.configuration.WabExtenderConfiguration;
+import com.liferay.portal.osgi.web.wab.extender.internal.event.EventUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 
 import java.net.URL;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.EventListener;
-import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.Filter;
 import javax.servlet.Servlet;
@@ -58,6 +73,7 @@ import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextAttributeListener;
 import javax.servlet.ServletContextListener;
+import javax.servlet.ServletException;
 import javax.servlet.ServletRequestAttributeListener;
 import javax.servlet.ServletRequestListener;
 import javax.servlet.annotation.HandlesTypes;
@@ -71,9 +87,13 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.namespace.HostNamespace;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
 import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
 /**
  * @author Raymond Augé
@@ -81,8 +101,14 @@ import org.osgi.util.tracker.ServiceTracker;
  */
 public class WabBundleProcessor {
 
-	public WabBundleProcessor(Bundle bundle, Logger logger) {
+	public WabBundleProcessor(
+		Bundle bundle, Object contextPathLock, Runnable startedCallback,
+		EventUtil eventUtil, Logger logger) {
+
 		_bundle = bundle;
+		_contextPathLock = contextPathLock;
+		_startedCallback = startedCallback;
+		_eventUtil = eventUtil;
 		_logger = logger;
 
 		BundleWiring bundleWiring = _bundle.adapt(BundleWiring.class);
@@ -92,211 +118,52 @@ public class WabBundleProcessor {
 	}
 
 	public void destroy() throws Exception {
-		Thread currentThread = Thread.currentThread();
-
-		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
-
-		try {
-			currentThread.setContextClassLoader(_bundleClassLoader);
-
-			destroyServlets();
-
-			destroyFilters();
-
-			destroyListeners();
+		_destroy();
 
-			_bundleContext.ungetService(
-				_servletContextHelperRegistrationServiceReference);
-		}
-		finally {
-			currentThread.setContextClassLoader(contextClassLoader);
+		if (_serviceTracker != null) {
+			_serviceTracker.close();
 		}
 	}
 
-	public void init(Dictionary<String, Object> properties) throws Exception {
-		Thread currentThread = Thread.currentThread();
-
-		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+	public void init(
+		WabExtenderConfiguration wabExtenderConfiguration,
+		ExecutorService executorService, Executor initExecutor,
+		ForkJoinPool forkJoinPool,
+		ScheduledExecutorService scheduledExecutorService) {
 
-		try {
-			currentThread.setContextClassLoader(_bundleClassLoader);
+		_executorService = executorService;
+		_initExecutor = initExecutor;
+		_forkJoinPool = forkJoinPool;
+		_wabExtenderConfiguration = wabExtenderConfiguration;
 
-			ServletContextHelperRegistration servletContextHelperRegistration =
-				initContext();
+		_serviceTracker = new ServiceTracker<>(
+			_bundleContext, ServletContextHelperRegistration.class,
+			new ServletContextHelperRegistrationServiceTrackerCustomizer());
 
-			boolean wabShapedBundle =
-				servletContextHelperRegistration.isWabShapedBundle();
+		_serviceTracker.open();
 
-			if (!wabShapedBundle) {
+		synchronized (this) {
+			if (_state != State.WAITING) {
 				return;
 			}
 
-			WebXMLDefinition webXMLDefinition =
-				servletContextHelperRegistration.getWebXMLDefinition();
-
-			Exception exception = webXMLDefinition.getException();
-
-			if (exception != null) {
-				throw exception;
-			}
-
-			ServletContext servletContext =
-				ModifiableServletContextAdapter.createInstance(
-					servletContextHelperRegistration.getServletContext(),
-					_bundle.getBundleContext(), webXMLDefinition, _logger);
-
-			initServletContainerInitializers(_bundle, servletContext);
-
-			scanTLDsForListeners(webXMLDefinition, servletContext);
-
-			initListeners(
-				webXMLDefinition.getListenerDefinitions(), servletContext);
-
-			ModifiableServletContext modifiableServletContext =
-				(ModifiableServletContext)servletContext;
-
-			initListeners(
-				modifiableServletContext.getListenerDefinitions(),
-				servletContext);
-
-			modifiableServletContext.registerFilters();
-
-			initFilters(webXMLDefinition.getFilterDefinitions());
-
-			modifiableServletContext.registerServlets();
-
-			initServlets(webXMLDefinition.getServletDefinitions());
-		}
-		catch (Exception e) {
 			_logger.log(
-				Logger.LOG_ERROR,
-				"Catastrophic initialization failure! Shutting down " +
-					_contextName + " WAB due to: " + e.getMessage(),
-				e);
-
-			destroy();
-
-			throw e;
-		}
-		finally {
-			currentThread.setContextClassLoader(contextClassLoader);
-		}
-	}
-
-	protected void collectAnnotatedClasses(
-		String classResource, Bundle bundle, Class<?>[] handledTypesArray,
-		Set<Class<?>> annotatedClasses) {
-
-		String className = classResource.replaceAll("\\.class$", "");
-
-		className = className.replaceAll("/", ".");
-
-		Class<?> annotatedClass = null;
-
-		try {
-			annotatedClass = bundle.loadClass(className);
-		}
-		catch (Throwable t) {
-			_logger.log(Logger.LOG_DEBUG, t.getMessage());
-
-			return;
-		}
-
-		// Class extends/implements
-
-		for (Class<?> handledType : handledTypesArray) {
-			if (handledType.isAssignableFrom(annotatedClass) &&
-				!Modifier.isAbstract(annotatedClass.getModifiers())) {
-
-				annotatedClasses.add(annotatedClass);
-
-				return;
-			}
-		}
-
-		// Class annotation
-
-		Annotation[] classAnnotations = new Annotation[0];
-
-		try {
-			classAnnotations = annotatedClass.getAnnotations();
-		}
-		catch (Throwable t) {
-			_logger.log(Logger.LOG_DEBUG, t.getMessage());
-		}
-
-		for (Annotation classAnnotation : classAnnotations) {
-			if (ArrayUtil.contains(
-					handledTypesArray, classAnnotation.annotationType())) {
-
-				annotatedClasses.add(annotatedClass);
-
-				return;
-			}
-		}
-
-		// Method annotation
-
-		Method[] classMethods = new Method[0];
-
-		try {
-			classMethods = annotatedClass.getDeclaredMethods();
-		}
-		catch (Throwable t) {
-			_logger.log(Logger.LOG_DEBUG, t.getMessage());
-		}
-
-		for (Method method : classMethods) {
-			Annotation[] methodAnnotations = new Annotation[0];
-
-			try {
-				methodAnnotations = method.getDeclaredAnnotations();
-			}
-			catch (Throwable t) {
-				_logger.log(Logger.LOG_DEBUG, t.getMessage());
-			}
-
-			for (Annotation methodAnnotation : methodAnnotations) {
-				if (ArrayUtil.contains(
-						handledTypesArray, methodAnnotation.annotationType())) {
+				Logger.LOG_INFO,
+				"Bundle " + _bundle + " is waiting for its servlet context " +
+					"helper registration");
 
-					annotatedClasses.add(annotatedClass);
-
-					return;
-				}
-			}
-		}
+			final long timeout = wabExtenderConfiguration.readinessTimeout();
 
-		// Field annotation
+			_timeoutFuture = scheduledExecutorService.schedule(
+				new Runnable() {
 
-		Field[] declaredFields = new Field[0];
+					@Override
+					public void run() {
+						_timeout(timeout);
+					}
 
-		try {
-			declaredFields = annotatedClass.getDeclaredFields();
-		}
-		catch (Throwable t) {
-			_logger.log(Logger.LOG_DEBUG, t.getMessage());
-		}
-
-		for (Field field : declaredFields) {
-			Annotation[] fieldAnnotations = new Annotation[0];
-
-			try {
-				fieldAnnotations = field.getDeclaredAnnotations();
-			}
-			catch (Throwable t) {
-				_logger.log(Logger.LOG_DEBUG, t.getMessage());
-			}
-
-			for (Annotation fieldAnnotation : fieldAnnotations) {
-				if (ArrayUtil.contains(
-						handledTypesArray, fieldAnnotation.annotationType())) {
-
-					annotatedClasses.add(annotatedClass);
-
-					return;
-				}
-			}
+				},
+				timeout, TimeUnit.MILLISECONDS);
 		}
 	}
 
@@ -304,6 +171,10 @@ public class WabBundleProcessor {
 		for (ServiceRegistration<?> serviceRegistration :
 				_filterRegistrations) {
 
+			if (!_filterRegistrations.remove(serviceRegistration)) {
+				continue;
+			}
+
 			try {
 				serviceRegistration.unregister();
 			}
@@ -311,14 +182,16 @@ public class WabBundleProcessor {
 				_logger.log(Logger.LOG_ERROR, e.getMessage(), e);
 			}
 		}
-
-		_filterRegistrations.clear();
 	}
 
 	protected void destroyListeners() {
 		for (ServiceRegistration<?> serviceRegistration :
 				_listenerRegistrations) {
 
+			if (!_listenerRegistrations.remove(serviceRegistration)) {
+				continue;
+			}
+
 			try {
 				serviceRegistration.unregister();
 			}
@@ -326,14 +199,16 @@ public class WabBundleProcessor {
 				_logger.log(Logger.LOG_ERROR, e.getMessage(), e);
 			}
 		}
-
-		_listenerRegistrations.clear();
 	}
 
 	protected void destroyServlets() {
 		for (ServiceRegistration<?> serviceRegistration :
 				_servletRegistrations) {
 
+			if (!_servletRegistrations.remove(serviceRegistration)) {
+				continue;
+			}
+
 			try {
 				serviceRegistration.unregister();
 			}
@@ -341,8 +216,6 @@ public class WabBundleProcessor {
 				_logger.log(Logger.LOG_ERROR, e.getMessage(), e);
 			}
 		}
-
-		_servletRegistrations.clear();
 	}
 
 	protected String[] getClassNames(EventListener eventListener) {
@@ -380,40 +253,21 @@ public class WabBundleProcessor {
 		return classNamesList.toArray(new String[classNamesList.size()]);
 	}
 
-	protected ServletContextHelperRegistration initContext() {
-		ServiceTracker
-			<ServletContextHelperRegistration, ServletContextHelperRegistration>
-				serviceTracker = new ServiceTracker<>(
-					_bundleContext, ServletContextHelperRegistration.class,
-					null);
-
-		serviceTracker.open();
-
-		try {
-			ServletContextHelperRegistration servletContextHelperRegistration =
-				serviceTracker.waitForService(2000);
-
-			WebXMLDefinition webXMLDefinition =
-				servletContextHelperRegistration.getWebXMLDefinition();
+	protected void initContext(
+		ServletContextHelperRegistration servletContextHelperRegistration) {
 
-			_servletContextHelperRegistrationServiceReference =
-				serviceTracker.getServiceReference();
+		WebXMLDefinition webXMLDefinition =
+			servletContextHelperRegistration.getWebXMLDefinition();
 
-			ServletContext servletContext =
-				servletContextHelperRegistration.getServletContext();
-
-			_contextName = servletContext.getServletContextName();
+		ServletContext servletContext =
+			servletContextHelperRegistration.getServletContext();
 
-			servletContext.setAttribute(
-				"jsp.taglib.mappings", webXMLDefinition.getJspTaglibMappings());
-			servletContext.setAttribute("osgi-bundlecontext", _bundleContext);
-			servletContext.setAttribute("osgi-runtime-vendor", _VENDOR);
+		_contextName = servletContext.getServletContextName();
 
-			return servletContextHelperRegistration;
-		}
-		catch (InterruptedException ie) {
-			return ReflectionUtil.throwException(ie);
-		}
+		servletContext.setAttribute(
+			"jsp.taglib.mappings", webXMLDefinition.getJspTaglibMappings());
+		servletContext.setAttribute("osgi-bundlecontext", _bundleContext);
+		servletContext.setAttribute("osgi-runtime-vendor", _VENDOR);
 	}
 
 	protected void initFilters(Map<String, FilterDefinition> filterDefinitions)
@@ -544,27 +398,33 @@ public class WabBundleProcessor {
 			Bundle bundle, ServletContext servletContext)
 		throws IOException {
 
-		BundleWiring bundleWiring = bundle.adapt(BundleWiring.class);
+		List<String> initializerClassNames = new ArrayList<>();
 
 		Enumeration<URL> initializerResources = bundle.getResources(
 			"META-INF/services/javax.servlet.ServletContainerInitializer");
 
-		if (initializerResources == null) {
-			return;
+		if (initializerResources != null) {
+			while (initializerResources.hasMoreElements()) {
+				URL url = initializerResources.nextElement();
+
+				try (InputStream inputStream = url.openStream()) {
+					initializerClassNames.add(StringUtil.read(inputStream));
+				}
+				catch (IOException ioe) {
+					_logger.log(Logger.LOG_ERROR, ioe.getMessage(), ioe);
+				}
+			}
 		}
 
-		while (initializerResources.hasMoreElements()) {
-			URL url = initializerResources.nextElement();
+		_wabScanIndex = _loadWabScanIndex(initializerClassNames);
 
-			try (InputStream inputStream = url.openStream()) {
-				String fqcn = StringUtil.read(inputStream);
+		HandlesTypesScanner handlesTypesScanner = new HandlesTypesScanner(
+			bundle, _forkJoinPool, _logger);
 
-				processServletContainerInitializerClass(
-					fqcn, bundle, bundleWiring, servletContext);
-			}
-			catch (IOException ioe) {
-				_logger.log(Logger.LOG_ERROR, ioe.getMessage(), ioe);
-			}
+		for (String initializerClassName : initializerClassNames) {
+			processServletContainerInitializerClass(
+				initializerClassName, bundle, handlesTypesScanner,
+				servletContext);
 		}
 	}
 
@@ -572,73 +432,65 @@ public class WabBundleProcessor {
 			Map<String, ServletDefinition> servletDefinitions)
 		throws Exception {
 
-		for (Entry<String, ServletDefinition> entry :
-				servletDefinitions.entrySet()) {
+		if (_executorService == null) {
+			for (ServletDefinition servletDefinition :
+					servletDefinitions.values()) {
 
-			ServletDefinition servletDefinition = entry.getValue();
+				_initServlet(servletDefinition);
+			}
 
-			Dictionary<String, Object> properties = new Hashtable<>();
+			return;
+		}
 
-			properties.put(
-				HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT,
-				_contextName);
-			properties.put(
-				HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ASYNC_SUPPORTED,
-				servletDefinition.isAsyncSupported());
-			properties.put(
-				HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ERROR_PAGE,
-				servletDefinition.getErrorPages());
-			properties.put(
-				HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME,
-				servletDefinition.getName());
+		Map<Integer, List<ServletDefinition>> loadOnStartupServletDefinitions =
+			new TreeMap<>();
+		List<ServletDefinition> otherServletDefinitions = new ArrayList<>();
 
-			String jspFile = servletDefinition.getJspFile();
-			List<String> urlPatterns = servletDefinition.getURLPatterns();
+		for (ServletDefinition servletDefinition :
+				servletDefinitions.values()) {
 
-			if (urlPatterns.isEmpty() && (jspFile != null)) {
-				urlPatterns.add(jspFile);
-			}
+			int loadOnStartup = servletDefinition.getLoadOnStartup();
 
-			properties.put(
-				HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN,
-				urlPatterns);
+			if (loadOnStartup < 0) {
+				otherServletDefinitions.add(servletDefinition);
 
-			Map<String, String> initParameters =
-				servletDefinition.getInitParameters();
+				continue;
+			}
 
-			for (Entry<String, String> initParametersEntry :
-					initParameters.entrySet()) {
+			List<ServletDefinition> curServletDefinitions =
+				loadOnStartupServletDefinitions.get(loadOnStartup);
 
-				String key = initParametersEntry.getKey();
-				String value = initParametersEntry.getValue();
+			if (curServletDefinitions == null) {
+				curServletDefinitions = new ArrayList<>();
 
-				properties.put(
-					HttpWhiteboardConstants.
-						HTTP_WHITEBOARD_SERVLET_INIT_PARAM_PREFIX + key,
-					value);
+				loadOnStartupServletDefinitions.put(
+					loadOnStartup, curServletDefinitions);
 			}
 
-			ServletExceptionAdapter servletExceptionAdaptor =
-				new ServletExceptionAdapter(servletDefinition.getServlet());
+			curServletDefinitions.add(servletDefinition);
+		}
 
-			ServiceRegistration<Servlet> serviceRegistration =
-				_bundleContext.registerService(
-					Servlet.class, servletExceptionAdaptor, properties);
+		for (List<ServletDefinition> curServletDefinitions :
+				loadOnStartupServletDefinitions.values()) {
 
-			Exception exception = servletExceptionAdaptor.getException();
+			if (curServletDefinitions.size() > 1) {
+				_initServletsConcurrently(curServletDefinitions);
 
-			if (exception != null) {
-				serviceRegistration.unregister();
+				continue;
+			}
 
-				throw exception;
+			for (ServletDefinition servletDefinition : curServletDefinitions) {
+				_initServlet(servletDefinition);
 			}
+		}
 
-			_servletRegistrations.add(serviceRegistration);
+		for (ServletDefinition servletDefinition : otherServletDefinitions) {
+			_initServlet(servletDefinition);
 		}
 	}
 
 	protected void processServletContainerInitializerClass(
-		String fqcn, Bundle bundle, BundleWiring bundleWiring,
+		String fqcn, Bundle bundle, HandlesTypesScanner handlesTypesScanner,
 		ServletContext servletContext) {
 
 		Class<? extends ServletContainerInitializer> initializerClass = null;
@@ -672,25 +524,8 @@ public class WabBundleProcessor {
 			handledTypesArray = new Class[0];
 		}
 
-		Collection<String> classResources = bundleWiring.listResources(
-			"/", "*.class", BundleWiring.LISTRESOURCES_RECURSE);
-
-		if (classResources == null) {
-			classResources = new ArrayList<>(0);
-		}
-
-		Set<Class<?>> annotatedClasses = new HashSet<>();
-
-		for (String classResource : classResources) {
-			URL urlClassResource = bundle.getResource(classResource);
-
-			if (urlClassResource == null) {
-				continue;
-			}
-
-			collectAnnotatedClasses(
-				classResource, bundle, handledTypesArray, annotatedClasses);
-		}
+		Set<Class<?>> annotatedClasses = _getHandledClasses(
+			fqcn, bundle, handlesTypesScanner, handledTypesArray);
 
 		if (annotatedClasses.isEmpty()) {
 			annotatedClasses = null;
@@ -711,9 +546,21 @@ public class WabBundleProcessor {
 	protected void scanTLDsForListeners(
 		WebXMLDefinition webXMLDefinition, ServletContext servletContext) {
 
-		List<String> listenerClassNames = new ArrayList<>();
+		List<String> listenerClassNames = null;
 
-		JspServlet.scanTLDs(_bundle, servletContext, listenerClassNames);
+		if (_wabScanIndex != null) {
+			listenerClassNames = _wabScanIndex.getListenerClassNames();
+		}
+
+		if (listenerClassNames == null) {
+			listenerClassNames = new ArrayList<>();
+
+			JspServlet.scanTLDs(_bundle, servletContext, listenerClassNames);
+
+			if (_wabScanIndex != null) {
+				_wabScanIndex.setListenerClassNames(listenerClassNames);
+			}
+		}
 
 		for (String listenerClassName : listenerClassNames) {
 			try {
@@ -740,6 +587,465 @@ public class WabBundleProcessor {
 		}
 	}
 
+	private Set<Class<?>> _getHandledClasses(
+		String initializerClassName, Bundle bundle,
+		HandlesTypesScanner handlesTypesScanner, Class<?>[] handledTypes) {
+
+		List<String> handledTypeNames = new ArrayList<>();
+
+		for (Class<?> handledType : handledTypes) {
+			handledTypeNames.add(handledType.getName());
+		}
+
+		List<String> handledClassNames = null;
+
+		if (_wabScanIndex != null) {
+			handledClassNames = _wabScanIndex.getHandledClassNames(
+				initializerClassName, handledTypeNames);
+		}
+
+		if (handledClassNames == null) {
+			Set<Class<?>> handledClasses =
+				handlesTypesScanner.getHandledClasses(handledTypes);
+
+			if (_wabScanIndex != null) {
+				handledClassNames = new ArrayList<>();
+
+				for (Class<?> handledClass : handledClasses) {
+					handledClassNames.add(handledClass.getName());
+				}
+
+				_wabScanIndex.setHandledClassNames(
+					initializerClassName, handledTypeNames, handledClassNames);
+			}
+
+			return handledClasses;
+		}
+
+		Set<Class<?>> handledClasses = new LinkedHashSet<>();
+
+		for (String handledClassName : handledClassNames) {
+			try {
+				handledClasses.add(bundle.loadClass(handledClassName));
+			}
+			catch (Throwable t) {
+				_logger.log(Logger.LOG_DEBUG, t.getMessage());
+			}
+		}
+
+		return handledClasses;
+	}
+
+	private String _getRevisionKey(BundleRevision bundleRevision) {
+		Bundle bundle = bundleRevision.getBundle();
+
+		return StringUtil.merge(
+			new Object[] {
+				bundle.getBundleId(), bundleRevision.getVersion(),
+				bundle.getLastModified()
+			},
+			StringPool.SLASH);
+	}
+
+	private boolean _destroy() {
+		synchronized (this) {
+			if (_state == State.DESTROYED) {
+				return false;
+			}
+
+			_state = State.DESTROYED;
+
+			if (_timeoutFuture != null) {
+				_timeoutFuture.cancel(false);
+			}
+		}
+
+		Thread currentThread = Thread.currentThread();
+
+		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+		try {
+			currentThread.setContextClassLoader(_bundleClassLoader);
+
+			destroyServlets();
+
+			destroyFilters();
+
+			destroyListeners();
+		}
+		finally {
+			currentThread.setContextClassLoader(contextClassLoader);
+		}
+
+		_notifyStarted();
+
+		return true;
+	}
+
+	private void _init(
+		ServletContextHelperRegistration servletContextHelperRegistration) {
+
+		Thread currentThread = Thread.currentThread();
+
+		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+		try {
+			currentThread.setContextClassLoader(_bundleClassLoader);
+
+			initContext(servletContextHelperRegistration);
+
+			boolean wabShapedBundle =
+				servletContextHelperRegistration.isWabShapedBundle();
+
+			if (!wabShapedBundle) {
+				return;
+			}
+
+			WebXMLDefinition webXMLDefinition =
+				servletContextHelperRegistration.getWebXMLDefinition();
+
+			Exception exception = webXMLDefinition.getException();
+
+			if (exception != null) {
+				throw exception;
+			}
+
+			ServletContext servletContext =
+				ModifiableServletContextAdapter.createInstance(
+					servletContextHelperRegistration.getServletContext(),
+					_bundle.getBundleContext(), webXMLDefinition, _logger);
+
+			initServletContainerInitializers(_bundle, servletContext);
+
+			scanTLDsForListeners(webXMLDefinition, servletContext);
+
+			_storeWabScanIndex();
+
+			if (_isDestroyed()) {
+				return;
+			}
+
+			initListeners(
+				webXMLDefinition.getListenerDefinitions(), servletContext);
+
+			ModifiableServletContext modifiableServletContext =
+				(ModifiableServletContext)servletContext;
+
+			initListeners(
+				modifiableServletContext.getListenerDefinitions(),
+				servletContext);
+
+			modifiableServletContext.registerFilters();
+
+			initFilters(webXMLDefinition.getFilterDefinitions());
+
+			modifiableServletContext.registerServlets();
+
+			initServlets(webXMLDefinition.getServletDefinitions());
+		}
+		catch (Exception e) {
+			_logger.log(
+				Logger.LOG_ERROR,
+				"Catastrophic initialization failure! Shutting down " +
+					_contextName + " WAB due to: " + e.getMessage(),
+				e);
+
+			_destroy();
+
+			_eventUtil.sendEvent(_bundle, EventUtil.FAILED, e, false);
+		}
+		finally {
+			_initialized();
+
+			currentThread.setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	private void _initialized() {
+		synchronized (this) {
+			if (_state == State.INITIALIZING) {
+				_state = State.INITIALIZED;
+
+				return;
+			}
+		}
+
+		// The WAB was destroyed while it was initializing, so unregister
+		// whatever was registered after the destroy
+
+		destroyServlets();
+
+		destroyFilters();
+
+		destroyListeners();
+	}
+
+	private void _initServlet(ServletDefinition servletDefinition)
+		throws Exception {
+
+		Dictionary<String, Object> properties = new Hashtable<>();
+
+		properties.put(
+			HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT,
+			_contextName);
+		properties.put(
+			HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ASYNC_SUPPORTED,
+			servletDefinition.isAsyncSupported());
+		properties.put(
+			HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ERROR_PAGE,
+			servletDefinition.getErrorPages());
+		properties.put(
+			HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME,
+			servletDefinition.getName());
+
+		String jspFile = servletDefinition.getJspFile();
+		List<String> urlPatterns = servletDefinition.getURLPatterns();
+
+		if (urlPatterns.isEmpty() && (jspFile != null)) {
+			urlPatterns.add(jspFile);
+		}
+
+		properties.put(
+			HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN,
+			urlPatterns);
+
+		Map<String, String> initParameters =
+			servletDefinition.getInitParameters();
+
+		for (Entry<String, String> initParametersEntry :
+				initParameters.entrySet()) {
+
+			String key = initParametersEntry.getKey();
+			String value = initParametersEntry.getValue();
+
+			properties.put(
+				HttpWhiteboardConstants.
+					HTTP_WHITEBOARD_SERVLET_INIT_PARAM_PREFIX + key,
+				value);
+		}
+
+		Servlet servlet = null;
+
+		if ((servletDefinition.getServletClass() != null) &&
+			_wabExtenderConfiguration.lazyServletInitialization() &&
+			(servletDefinition.getLoadOnStartup() < 0)) {
+
+			servlet = new LazyServletAdapter(_bundle, servletDefinition);
+		}
+		else {
+			servlet = servletDefinition.getServlet();
+		}
+
+		if (servlet == null) {
+			throw new ServletException(
+				"Bundle " + _bundle + " is unable to load servlet " +
+					servletDefinition.getServletClassName());
+		}
+
+		ServletExceptionAdapter servletExceptionAdaptor =
+			new ServletExceptionAdapter(servlet);
+
+		ServiceRegistration<Servlet> serviceRegistration =
+			_bundleContext.registerService(
+				Servlet.class, servletExceptionAdaptor, properties);
+
+		Exception exception = servletExceptionAdaptor.getException();
+
+		if (exception != null) {
+			serviceRegistration.unregister();
+
+			throw exception;
+		}
+
+		_servletRegistrations.add(serviceRegistration);
+	}
+
+	private void _initServletsConcurrently(
+			List<ServletDefinition> servletDefinitions)
+		throws Exception {
+
+		List<FutureTask<Void>> futureTasks = new ArrayList<>();
+
+		for (final ServletDefinition servletDefinition : servletDefinitions) {
+			FutureTask<Void> futureTask = new FutureTask<>(
+				new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						Thread currentThread = Thread.currentThread();
+
+						ClassLoader contextClassLoader =
+							currentThread.getContextClassLoader();
+
+						try {
+							currentThread.setContextClassLoader(
+								_bundleClassLoader);
+
+							_initServlet(servletDefinition);
+						}
+						finally {
+							currentThread.setContextClassLoader(
+								contextClassLoader);
+						}
+
+						return null;
+					}
+
+				});
+
+			futureTasks.add(futureTask);
+
+			try {
+				_executorService.execute(futureTask);
+			}
+			catch (RejectedExecutionException ree) {
+				_logger.log(
+					Logger.LOG_WARNING,
+					"Servlet " + servletDefinition.getName() + " of bundle " +
+						_bundle + " will be initialized on the deploying " +
+						"thread because it was rejected by the servlet " +
+						"initializer pool",
+					ree);
+			}
+		}
+
+		// Run the tasks that no pool thread has started yet on this thread so
+		// that a saturated pool cannot stall the deployment
+
+		Throwable throwable = null;
+
+		for (FutureTask<Void> futureTask : futureTasks) {
+			futureTask.run();
+
+			try {
+				futureTask.get();
+			}
+			catch (ExecutionException ee) {
+				Throwable cause = ee.getCause();
+
+				if (throwable == null) {
+					throwable = cause;
+				}
+				else {
+					_logger.log(Logger.LOG_ERROR, cause.getMessage(), cause);
+				}
+			}
+		}
+
+		if (throwable != null) {
+			ReflectionUtil.throwException(throwable);
+		}
+	}
+
+	private synchronized boolean _isDestroyed() {
+		if (_state == State.DESTROYED) {
+			return true;
+		}
+
+		return false;
+	}
+
+	private WabScanIndex _loadWabScanIndex(List<String> initializerClassNames) {
+		File file = _bundle.getDataFile(_WAB_SCAN_INDEX_FILE_NAME);
+
+		if (file == null) {
+			return null;
+		}
+
+		BundleWiring bundleWiring = _bundle.adapt(BundleWiring.class);
+
+		if (bundleWiring == null) {
+			return null;
+		}
+
+		// The scans list the resources of the whole class space, so the key
+		// covers the attached fragments and every bundle the WAB is wired to
+
+		Set<String> fragmentKeys = new TreeSet<>();
+
+		for (BundleWire bundleWire :
+				bundleWiring.getProvidedWires(HostNamespace.HOST_NAMESPACE)) {
+
+			fragmentKeys.add(_getRevisionKey(bundleWire.getRequirer()));
+		}
+
+		Set<String> providerKeys = new TreeSet<>();
+
+		for (BundleWire bundleWire : bundleWiring.getRequiredWires(null)) {
+			providerKeys.add(_getRevisionKey(bundleWire.getProvider()));
+		}
+
+		List<String> sortedInitializerClassNames = new ArrayList<>(
+			initializerClassNames);
+
+		Collections.sort(sortedInitializerClassNames);
+
+		String key = StringUtil.merge(
+			new Object[] {
+				_getRevisionKey(bundleWiring.getRevision()),
+				StringUtil.merge(fragmentKeys), StringUtil.merge(providerKeys),
+				StringUtil.merge(sortedInitializerClassNames)
+			},
+			StringPool.SEMICOLON);
+
+		WabScanIndex wabScanIndex = new WabScanIndex(file, key);
+
+		try {
+			wabScanIndex.load();
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to load the scan index of " + _bundle, ioe);
+		}
+
+		return wabScanIndex;
+	}
+
+	private void _notifyStarted() {
+		if ((_startedCallback != null) &&
+			_startedNotified.compareAndSet(false, true)) {
+
+			_startedCallback.run();
+		}
+	}
+
+	private void _storeWabScanIndex() {
+		if (_wabScanIndex == null) {
+			return;
+		}
+
+		try {
+			_wabScanIndex.store();
+		}
+		catch (IOException ioe) {
+			_logger.log(
+				Logger.LOG_WARNING,
+				"Unable to store the scan index of " + _bundle, ioe);
+		}
+	}
+
+	private void _timeout(long timeout) {
+		synchronized (this) {
+			if (_state != State.WAITING) {
+				return;
+			}
+
+			_state = State.DESTROYED;
+		}
+
+		String message =
+			"Bundle " + _bundle + " did not get its servlet context helper " +
+				"registration within " + timeout + " ms";
+
+		_logger.log(Logger.LOG_ERROR, message);
+
+		_eventUtil.sendEvent(
+			_bundle, EventUtil.FAILED, new TimeoutException(message), false);
+
+		_notifyStarted();
+	}
+
 	private static final HandlesTypes _NULL_HANDLES_TYPES = new HandlesTypes() {
 
 		@Override
@@ -756,18 +1062,137 @@ public class WabBundleProcessor {
 
 	private static final String _VENDOR = "Liferay, Inc.";
 
+	private static final String _WAB_SCAN_INDEX_FILE_NAME =
+		"wab-scan-index.properties";
+
 	private final Bundle _bundle;
 	private final ClassLoader _bundleClassLoader;
 	private final BundleContext _bundleContext;
 	private String _contextName;
+	private final Object _contextPathLock;
+	private final EventUtil _eventUtil;
+	private ExecutorService _executorService;
 	private final Set<ServiceRegistration<Filter>> _filterRegistrations =
 		new ConcurrentSkipListSet<>();
+	private ForkJoinPool _forkJoinPool;
+	private Executor _initExecutor;
 	private final Set<ServiceRegistration<?>> _listenerRegistrations =
 		new ConcurrentSkipListSet<>();
 	private final Logger _logger;
-	private ServiceReference<ServletContextHelperRegistration>
-		_servletContextHelperRegistrationServiceReference;
 	private final Set<ServiceRegistration<Servlet>> _servletRegistrations =
 		new ConcurrentSkipListSet<>();
+	private ServiceTracker
+		<ServletContextHelperRegistration, ServletContextHelperRegistration>
+			_serviceTracker;
+	private final Runnable _startedCallback;
+	private final AtomicBoolean _startedNotified = new AtomicBoolean();
+	private State _state = State.WAITING;
+	private ScheduledFuture<?> _timeoutFuture;
+	private WabExtenderConfiguration _wabExtenderConfiguration;
+	private WabScanIndex _wabScanIndex;
+
+	private static enum State {
+
+		DESTROYED, INITIALIZED, INITIALIZING, WAITING
+
+	}
+
+	private class ServletContextHelperRegistrationServiceTrackerCustomizer
+		implements ServiceTrackerCustomizer
+			<ServletContextHelperRegistration,
+				ServletContextHelperRegistration> {
+
+		@Override
+		public ServletContextHelperRegistration addingService(
+			ServiceReference<ServletContextHelperRegistration>
+				serviceReference) {
+
+			final ServletContextHelperRegistration
+				servletContextHelperRegistration = _bundleContext.getService(
+					serviceReference);
+
+			if (servletContextHelperRegistration == null) {
+				return null;
+			}
+
+			boolean waiting = false;
+
+			synchronized (WabBundleProcessor.this) {
+				if (_state == State.WAITING) {
+					_state = State.INITIALIZING;
+
+					if (_timeoutFuture != null) {
+						_timeoutFuture.cancel(false);
+					}
+
+					waiting = true;
+				}
+			}
+
+			if (!waiting) {
+				_bundleContext.ungetService(serviceReference);
+
+				return null;
+			}
+
+			// Initialize off the service event thread so that a slow WAB does
+			// not hold up the framework, the readiness timeout, or a stop
+
+			try {
+				_initExecutor.execute(
+					new Runnable() {
+
+						@Override
+						public void run() {
+
+							// WABs that share a context path initialize and
+							// undeploy one at a time
+
+							synchronized (_contextPathLock) {
+								_init(servletContextHelperRegistration);
+							}
+
+							_notifyStarted();
+						}
+
+					});
+			}
+			catch (RejectedExecutionException ree) {
+				_logger.log(
+					Logger.LOG_WARNING,
+					"Bundle " + _bundle + " cannot be initialized because " +
+						"the deployer is closed",
+					ree);
+
+				_destroy();
+			}
+
+			return servletContextHelperRegistration;
+		}
+
+		@Override
+		public void modifiedService(
+			ServiceReference<ServletContextHelperRegistration>
+				serviceReference,
+			ServletContextHelperRegistration servletContextHelperRegistration) {
+		}
+
+		@Override
+		public void removedService(
+			ServiceReference<ServletContextHelperRegistration>
+				serviceReference,
+			ServletContextHelperRegistration servletContextHelperRegistration) {
+
+			if (_destroy()) {
+				_logger.log(
+					Logger.LOG_WARNING,
+					"Bundle " + _bundle + " was destroyed because its " +
+						"servlet context helper registration was removed");
+			}
+
+			_bundleContext.ungetService(serviceReference);
+		}
+
+	}
 
 }
\ No newline at end of file
@@ -21,9 +21,21 @@ import com.liferay.portal.osgi.web.wab.extender.internal.configuration.WabExtend
 import com.liferay.portal.osgi.web.wab.extender.internal.event.EventUtil;
 import com.liferay.portal.profile.PortalProfile;
 
+import java.util.ArrayList;
 import java.util.Dictionary;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.felix.utils.extender.AbstractExtender;
 import org.apache.felix.utils.extender.Extension;
@@ -32,6 +44,8 @@ import org.apache.felix.utils.log.Logger;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -51,8 +65,6 @@ public class WabFactory extends AbstractExtender {
 
 	@Activate
 	public void activate(ComponentContext componentContext) {
-		setSynchronous(true);
-
 		_bundleContext = componentContext.getBundleContext();
 		_eventUtil = new EventUtil(_bundleContext);
 		_logger = new Logger(_bundleContext);
@@ -63,9 +75,30 @@ public class WabFactory extends AbstractExtender {
 		_wabExtenderConfiguration = ConfigurableUtil.createConfigurable(
 			WabExtenderConfiguration.class, properties);
 
+		setSynchronous(!_wabExtenderConfiguration.asynchronousDeployment());
+
+		if (!isSynchronous()) {
+			_scheduledExecutorService =
+				Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(
+								runnable, "WAB Deployer Timeout");
+
+							thread.setDaemon(true);
+
+							return thread;
+						}
+
+					});
+		}
+
 		try {
 			_webBundleDeployer = new WebBundleDeployer(
-				_bundleContext, properties, _eventUtil, _logger);
+				_bundleContext, _wabExtenderConfiguration, _eventUtil,
+				_logger);
 
 			super.start(_bundleContext);
 		}
@@ -78,6 +111,12 @@ public class WabFactory extends AbstractExtender {
 	public void deactivate() throws Exception {
 		super.stop(_bundleContext);
 
+		if (_scheduledExecutorService != null) {
+			_scheduledExecutorService.shutdownNow();
+
+			_scheduledExecutorService = null;
+		}
+
 		_bundleContext = null;
 
 		_eventUtil.close();
@@ -91,6 +130,37 @@ public class WabFactory extends AbstractExtender {
 		_webBundleDeployer = null;
 	}
 
+	@Override
+	protected ExecutorService createExecutor() {
+		int threads = _wabExtenderConfiguration.asynchronousDeploymentThreads();
+
+		if (threads <= 0) {
+			Runtime runtime = Runtime.getRuntime();
+
+			threads = runtime.availableProcessors();
+		}
+
+		return Executors.newFixedThreadPool(
+			threads,
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(
+						runnable,
+						"WAB Deployer-" + _threadCounter.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+
+				private final AtomicInteger _threadCounter =
+					new AtomicInteger();
+
+			});
+	}
+
 	@Override
 	protected void debug(Bundle bundle, String message) {
 		_logger.log(Logger.LOG_DEBUG, "[" + bundle + "] " + message);
@@ -98,7 +168,11 @@ public class WabFactory extends AbstractExtender {
 
 	@Override
 	protected Extension doCreateExtension(Bundle bundle) throws Exception {
-		return new WABExtension(bundle);
+		WABExtension wabExtension = new WABExtension(bundle);
+
+		_wabExtensions.put(bundle, wabExtension);
+
+		return wabExtension;
 	}
 
 	@Override
@@ -120,10 +194,14 @@ public class WabFactory extends AbstractExtender {
 	private EventUtil _eventUtil;
 	private Logger _logger;
 
+	private ScheduledExecutorService _scheduledExecutorService;
+
 	@Reference
 	private ServletContextHelperFactory _servletContextHelperFactory;
 
 	private WabExtenderConfiguration _wabExtenderConfiguration;
+	private final ConcurrentMap<Bundle, WABExtension> _wabExtensions =
+		new ConcurrentHashMap<>();
 	private WebBundleDeployer _webBundleDeployer;
 
 	private class WABExtension implements Extension {
@@ -134,6 +212,14 @@ public class WabFactory extends AbstractExtender {
 
 		@Override
 		public void destroy() throws Exception {
+
+			// A deployment that has not been scheduled yet must not run after
+			// the bundle was stopped
+
+			if (_deployScheduled.compareAndSet(false, true)) {
+				_deployed();
+			}
+
 			try {
 				_started.await(
 					_wabExtenderConfiguration.stopTimeout(),
@@ -149,27 +235,182 @@ public class WabFactory extends AbstractExtender {
 					ie);
 			}
 
-			if (_serviceRegistration != null) {
-				_serviceRegistration.unregister();
-			}
+			_wabExtensions.remove(_bundle, this);
+
+			synchronized (_deployLock) {
+				_destroyed = true;
+
+				if (_serviceRegistration != null) {
+					_serviceRegistration.unregister();
+				}
 
-			_webBundleDeployer.doStop(_bundle);
+				_webBundleDeployer.doStop(_bundle);
+			}
 		}
 
 		@Override
 		public void start() throws Exception {
-			try {
-				_serviceRegistration = _webBundleDeployer.doStart(_bundle);
+			if (isSynchronous()) {
+				_deploy();
+
+				return;
+			}
+
+			// Instead of blocking a deployer thread on the required WABs, the
+			// last required WAB to start schedules this deployment
+
+			BundleWiring bundleWiring = _bundle.adapt(BundleWiring.class);
+
+			if (bundleWiring != null) {
+				for (BundleWire bundleWire :
+						bundleWiring.getRequiredWires(null)) {
+
+					BundleWiring providerBundleWiring =
+						bundleWire.getProviderWiring();
+
+					WABExtension wabExtension = _wabExtensions.get(
+						providerBundleWiring.getBundle());
+
+					if ((wabExtension != null) && (wabExtension != this)) {
+						wabExtension._addDependent(this);
+					}
+				}
+			}
+
+			if (_pendingCount.get() > 1) {
+				_timeoutFuture = _scheduledExecutorService.schedule(
+					new Runnable() {
+
+						@Override
+						public void run() {
+							if (_deployScheduled.get()) {
+								return;
+							}
+
+							_logger.log(
+								Logger.LOG_WARNING,
+								"Deploying " + _bundle + " before its " +
+									"required WABs have started");
+
+							_scheduleDeploy();
+						}
+
+					},
+					_wabExtenderConfiguration.requiredWabsTimeout(),
+					TimeUnit.MILLISECONDS);
+			}
+
+			if (_pendingCount.decrementAndGet() == 0) {
+				_deploy();
+			}
+		}
+
+		private synchronized void _addDependent(WABExtension wabExtension) {
+			if (_started.getCount() == 0) {
+				return;
+			}
+
+			wabExtension._pendingCount.incrementAndGet();
+
+			_dependents.add(wabExtension);
+		}
+
+		private void _deploy() {
+			if (!_deployScheduled.compareAndSet(false, true)) {
+				return;
+			}
+
+			// The WABs that require this one are released once it is
+			// initialized or has failed, not as soon as it was handed over
+
+			synchronized (_deployLock) {
+				if (_destroyed) {
+					_deployed();
+
+					return;
+				}
+
+				try {
+					_serviceRegistration = _webBundleDeployer.doStart(
+						_bundle,
+						new Runnable() {
+
+							@Override
+							public void run() {
+								_deployed();
+							}
+
+						});
+				}
+				catch (RuntimeException re) {
+					_deployed();
+
+					throw re;
+				}
+			}
+		}
+
+		private void _deployed() {
+			if (_timeoutFuture != null) {
+				_timeoutFuture.cancel(false);
 			}
-			finally {
+
+			List<WABExtension> dependents = null;
+
+			synchronized (this) {
 				_started.countDown();
+
+				dependents = new ArrayList<>(_dependents);
+
+				_dependents.clear();
+			}
+
+			for (WABExtension dependent : dependents) {
+				if (dependent._pendingCount.decrementAndGet() == 0) {
+					dependent._scheduleDeploy();
+				}
+			}
+		}
+
+		private void _scheduleDeploy() {
+			ExecutorService executorService = getExecutors();
+
+			if (executorService == null) {
+				if (_deployScheduled.compareAndSet(false, true)) {
+					_deployed();
+				}
+
+				return;
+			}
+
+			try {
+				executorService.execute(
+					new Runnable() {
+
+						@Override
+						public void run() {
+							_deploy();
+						}
+
+					});
+			}
+			catch (RejectedExecutionException ree) {
+				if (_deployScheduled.compareAndSet(false, true)) {
+					_deployed();
+				}
 			}
 		}
 
 		private final Bundle _bundle;
+		private final Object _deployLock = new Object();
+		private final AtomicBoolean _deployScheduled = new AtomicBoolean();
+		private final List<WABExtension> _dependents = new ArrayList<>();
+		private boolean _destroyed;
+		private final AtomicInteger _pendingCount = new AtomicInteger(1);
 		private ServiceRegistration<PortalProfile> _serviceRegistration;
 		private final CountDownLatch _started = new CountDownLatch(1);
+		private volatile ScheduledFuture<?> _timeoutFuture;
 
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.wab.extender.internal;
+
+import com.liferay.portal.kernel.util.StringUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Persists the class names found while scanning a WAB, the classes matching
+ * the <code>HandlesTypes</code> of each servlet container initializer and the
+ * listener classes declared in its TLDs, so that an unchanged WAB is not
+ * scanned again when it is restarted. The index is discarded when its key
+ * changes. The key is built from the revisions of the WAB, its fragments and
+ * the bundles it is wired to, and from its initializers.
+ *
+ * @author agent
+ */
+public class WabScanIndex {
+
+	public WabScanIndex(File file, String key) {
+		_file = file;
+		_key = key;
+	}
+
+	public List<String> getHandledClassNames(
+		String initializerClassName, Collection<String> handledTypeNames) {
+
+		String value = _properties.getProperty(
+			_HANDLED_TYPES_PREFIX + initializerClassName);
+
+		if ((value == null) ||
+			!value.equals(StringUtil.merge(handledTypeNames))) {
+
+			return null;
+		}
+
+		return _getList(_HANDLED_CLASSES_PREFIX + initializerClassName);
+	}
+
+	public List<String> getListenerClassNames() {
+		return _getList(_LISTENER_CLASSES);
+	}
+
+	public void load() throws IOException {
+		if (!_file.exists()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream inputStream = new FileInputStream(_file)) {
+			properties.load(inputStream);
+		}
+
+		if (_key.equals(properties.getProperty(_KEY))) {
+			_properties = properties;
+		}
+	}
+
+	public void setHandledClassNames(
+		String initializerClassName, Collection<String> handledTypeNames,
+		Collection<String> handledClassNames) {
+
+		_properties.setProperty(
+			_HANDLED_TYPES_PREFIX + initializerClassName,
+			StringUtil.merge(handledTypeNames));
+		_properties.setProperty(
+			_HANDLED_CLASSES_PREFIX + initializerClassName,
+			StringUtil.merge(handledClassNames));
+
+		_dirty = true;
+	}
+
+	public void setListenerClassNames(Collection<String> listenerClassNames) {
+		_properties.setProperty(
+			_LISTENER_CLASSES, StringUtil.merge(listenerClassNames));
+
+		_dirty = true;
+	}
+
+	public void store() throws IOException {
+		if (!_dirty) {
+			return;
+		}
+
+		_dirty = false;
+
+		_properties.setProperty(_KEY, _key);
+
+		File parentFile = _file.getParentFile();
+
+		if (parentFile != null) {
+			parentFile.mkdirs();
+		}
+
+		try (OutputStream outputStream = new FileOutputStream(_file)) {
+			_properties.store(outputStream, null);
+		}
+	}
+
+	private List<String> _getList(String name) {
+		String value = _properties.getProperty(name);
+
+		if (value == null) {
+			return null;
+		}
+
+		return Arrays.asList(StringUtil.split(value));
+	}
+
+	private static final String _HANDLED_CLASSES_PREFIX = "handled.classes.";
+
+	private static final String _HANDLED_TYPES_PREFIX = "handled.types.";
+
+	private static final String _KEY = "key";
+
+	private static final String _LISTENER_CLASSES = "listener.classes";
+
+	private boolean _dirty;
+	private final File _file;
+	private final String _key;
+	private Properties _properties = new Properties();
+
+}
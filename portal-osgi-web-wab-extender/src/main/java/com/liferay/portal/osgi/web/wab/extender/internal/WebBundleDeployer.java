@@ -16,6 +16,7 @@ package com.liferay.portal.osgi.web.wab.extender.internal;
 
 import com.liferay.portal.kernel.util.SetUtil;
 import com.liferay.portal.kernel.util.StringUtil;
+import com.liferay.portal.osgi.web.wab.extender.internal.configuration.WabExtenderConfiguration;
 import com.liferay.portal.osgi.web.wab.extender.internal.event.EventUtil;
 import com.liferay.portal.profile.PortalProfile;
 
@@ -24,12 +25,19 @@ import java.io.InputStream;
 
 import java.net.URL;
 
-import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.felix.utils.log.Logger;
 
@@ -45,28 +53,122 @@ import org.osgi.framework.wiring.BundleRevision;
 public class WebBundleDeployer {
 
 	public WebBundleDeployer(
-			BundleContext bundleContext, Dictionary<String, Object> properties,
+			BundleContext bundleContext,
+			WabExtenderConfiguration wabExtenderConfiguration,
 			EventUtil eventUtil, Logger logger)
 		throws Exception {
 
 		_bundleContext = bundleContext;
-		_properties = properties;
+		_wabExtenderConfiguration = wabExtenderConfiguration;
 		_eventUtil = eventUtil;
 		_logger = logger;
+
+		Runtime runtime = Runtime.getRuntime();
+
+		_forkJoinPool = new ForkJoinPool(runtime.availableProcessors());
+
+		int initThreads =
+			wabExtenderConfiguration.asynchronousDeploymentThreads();
+
+		if (initThreads <= 0) {
+			initThreads = runtime.availableProcessors();
+		}
+
+		_initExecutorService = Executors.newFixedThreadPool(
+			initThreads,
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(
+						runnable,
+						"WAB Initializer-" + _threadCounter.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+
+				private final AtomicInteger _threadCounter =
+					new AtomicInteger();
+
+			});
+
+		if (wabExtenderConfiguration.parallelServletInitialization()) {
+			int threads =
+				wabExtenderConfiguration.parallelServletInitializationThreads();
+
+			if (threads <= 0) {
+				threads = runtime.availableProcessors();
+			}
+
+			_executorService = Executors.newFixedThreadPool(
+				threads,
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(
+							runnable,
+							"WAB Servlet Initializer-" +
+								_threadCounter.incrementAndGet());
+
+						thread.setDaemon(true);
+
+						return thread;
+					}
+
+					private final AtomicInteger _threadCounter =
+						new AtomicInteger();
+
+				});
+		}
+		else {
+			_executorService = null;
+		}
+
+		_scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(
+						runnable, "WAB Readiness Timeout");
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+
+			});
 	}
 
 	public void close() {
 		for (Bundle bundle : _wabBundleProcessors.keySet()) {
 			doStop(bundle);
 		}
+
+		if (_executorService != null) {
+			_executorService.shutdownNow();
+		}
+
+		_forkJoinPool.shutdownNow();
+
+		_initExecutorService.shutdownNow();
+
+		_scheduledExecutorService.shutdownNow();
 	}
 
-	public ServiceRegistration<PortalProfile> doStart(Bundle bundle) {
+	public ServiceRegistration<PortalProfile> doStart(
+		Bundle bundle, Runnable startedCallback) {
+
 		_eventUtil.sendEvent(bundle, EventUtil.DEPLOYING, null, false);
 
 		String contextPath = WabUtil.getWebContextPath(bundle);
 
 		if (contextPath == null) {
+			_notifyStarted(startedCallback);
+
 			return null;
 		}
 
@@ -75,6 +177,8 @@ public class WebBundleDeployer {
 		if (bundleContext == null) {
 			_eventUtil.sendEvent(bundle, EventUtil.FAILED, null, false);
 
+			_notifyStarted(startedCallback);
+
 			return null;
 		}
 
@@ -82,7 +186,7 @@ public class WebBundleDeployer {
 			"/WEB-INF", "liferay-plugin-package.properties", false);
 
 		if ((enumeration == null) || !enumeration.hasMoreElements()) {
-			_initWabBundle(bundle);
+			_initWabBundle(bundle, startedCallback);
 
 			return null;
 		}
@@ -103,13 +207,18 @@ public class WebBundleDeployer {
 				properties.getProperty("liferay-portal-profile-names")));
 
 		if (portalProfileNames.isEmpty()) {
-			_initWabBundle(bundle);
+			_initWabBundle(bundle, startedCallback);
 
 			return null;
 		}
 
 		portalProfileNames.add(bundle.getSymbolicName());
 
+		// The WAB waits for its portal profile, which may never be activated,
+		// so the WABs that require it must not wait as well
+
+		_notifyStarted(startedCallback);
+
 		return _bundleContext.registerService(
 			PortalProfile.class,
 			new WarModuleProfile(bundle, portalProfileNames), null);
@@ -125,16 +234,27 @@ public class WebBundleDeployer {
 
 		_eventUtil.sendEvent(bundle, EventUtil.UNDEPLOYING, null, false);
 
+		String contextPath = WabUtil.getWebContextPath(bundle);
+
 		try {
 			wabBundleProcessor.destroy();
 
-			_eventUtil.sendEvent(bundle, EventUtil.UNDEPLOYED, null, false);
+			// An initialization that is still running holds the context path
+			// lock until it has unregistered what it registered
+
+			synchronized (_getContextPathLock(contextPath)) {
+				_eventUtil.sendEvent(
+					bundle, EventUtil.UNDEPLOYED, null, false);
 
-			handleCollidedWABs(bundle);
+				handleCollidedWABs(bundle);
+			}
 		}
 		catch (Exception e) {
 			_eventUtil.sendEvent(bundle, EventUtil.FAILED, e, false);
 		}
+		finally {
+			_releaseContextPathLock(contextPath);
+		}
 	}
 
 	public boolean isFragmentBundle(Bundle bundle) {
@@ -162,46 +282,119 @@ public class WebBundleDeployer {
 			String curContextPath = WabUtil.getWebContextPath(curBundle);
 
 			if (contextPath.equals(curContextPath)) {
-				doStart(curBundle);
+				doStart(curBundle, null);
 
 				break;
 			}
 		}
 	}
 
-	private void _initWabBundle(Bundle bundle) {
+	private ContextPathLock _acquireContextPathLock(String contextPath) {
+		synchronized (_contextPathLocks) {
+			ContextPathLock contextPathLock = _contextPathLocks.get(
+				contextPath);
+
+			if (contextPathLock == null) {
+				contextPathLock = new ContextPathLock();
+
+				_contextPathLocks.put(contextPath, contextPathLock);
+			}
+
+			contextPathLock._count++;
+
+			return contextPathLock;
+		}
+	}
+
+	private ContextPathLock _getContextPathLock(String contextPath) {
+		synchronized (_contextPathLocks) {
+			return _contextPathLocks.get(contextPath);
+		}
+	}
+
+	private void _initWabBundle(Bundle bundle, Runnable startedCallback) {
+		String contextPath = WabUtil.getWebContextPath(bundle);
+
+		ContextPathLock contextPathLock = _acquireContextPathLock(contextPath);
+
+		WabBundleProcessor newWabBundleProcessor = null;
+
 		try {
-			WabBundleProcessor newWabBundleProcessor = new WabBundleProcessor(
-				bundle, _logger);
+			newWabBundleProcessor = new WabBundleProcessor(
+				bundle, contextPathLock, startedCallback, _eventUtil, _logger);
 
 			WabBundleProcessor oldWabBundleProcessor =
 				_wabBundleProcessors.putIfAbsent(bundle, newWabBundleProcessor);
 
 			if (oldWabBundleProcessor != null) {
+				_releaseContextPathLock(contextPath);
+
 				_eventUtil.sendEvent(bundle, EventUtil.FAILED, null, false);
 
+				_notifyStarted(startedCallback);
+
 				return;
 			}
 
-			newWabBundleProcessor.init(_properties);
+			newWabBundleProcessor.init(
+				_wabExtenderConfiguration, _executorService,
+				_initExecutorService, _forkJoinPool,
+				_scheduledExecutorService);
 		}
 		catch (Exception e) {
+			if (newWabBundleProcessor == null) {
+				_releaseContextPathLock(contextPath);
+			}
+
 			_eventUtil.sendEvent(bundle, EventUtil.FAILED, e, false);
+
+			_notifyStarted(startedCallback);
+		}
+	}
+
+	private void _notifyStarted(Runnable startedCallback) {
+		if (startedCallback != null) {
+			startedCallback.run();
+		}
+	}
+
+	private void _releaseContextPathLock(String contextPath) {
+		synchronized (_contextPathLocks) {
+			ContextPathLock contextPathLock = _contextPathLocks.get(
+				contextPath);
+
+			contextPathLock._count--;
+
+			if (contextPathLock._count == 0) {
+				_contextPathLocks.remove(contextPath);
+			}
 		}
 	}
 
 	private final BundleContext _bundleContext;
+	private final Map<String, ContextPathLock> _contextPathLocks =
+		new HashMap<>();
 	private final EventUtil _eventUtil;
+	private final ExecutorService _executorService;
+	private final ForkJoinPool _forkJoinPool;
+	private final ExecutorService _initExecutorService;
 	private final Logger _logger;
-	private final Dictionary<String, Object> _properties;
+	private final ScheduledExecutorService _scheduledExecutorService;
 	private final ConcurrentMap<Bundle, WabBundleProcessor>
 		_wabBundleProcessors = new ConcurrentHashMap<>();
+	private final WabExtenderConfiguration _wabExtenderConfiguration;
+
+	private static class ContextPathLock {
+
+		private int _count;
+
+	}
 
 	private class WarModuleProfile implements PortalProfile {
 
 		@Override
 		public void activate() {
-			_initWabBundle(_bundle);
+			_initWabBundle(_bundle, null);
 		}
 
 		@Override
@@ -16,11 +16,6 @@ package com.liferay.portal.osgi.web.wab.extender.internal.adapter;
 
 import com.liferay.portal.kernel.util.HashMapDictionary;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
@@ -133,62 +128,38 @@ public class HttpAdapter {
 
 	@Reference(target = "(original.bean=true)", unbind = "-")
 	protected void setServletContext(ServletContext servletContext) {
-		Class<?> clazz = getClass();
-
-		_servletContext = (ServletContext)Proxy.newProxyInstance(
-			clazz.getClassLoader(), _INTERFACES,
-			new ServletContextAdaptor(servletContext));
+		_servletContext = new ServletContextAdaptor(servletContext);
 	}
 
-	private static final Class<?>[] _INTERFACES = new Class<?>[] {
-		ServletContext.class
-	};
-
 	private HttpServiceServlet _httpServiceServlet;
 	private ServiceRegistration<?> _serviceRegistration;
 	private ServletContext _servletContext;
 
-	private static class ServletContextAdaptor implements InvocationHandler {
+	private static class ServletContextAdaptor extends ServletContextDelegate {
 
 		public ServletContextAdaptor(ServletContext servletContext) {
-			_servletContext = servletContext;
+			super(servletContext);
 		}
 
 		@Override
-		public Object invoke(Object proxy, Method method, Object[] args)
-			throws Throwable {
-
-			if (method.getName().equals("getInitParameter") &&
-				(args != null) && (args.length == 1)) {
-
-				if ("osgi.http.endpoint".equals(args[0])) {
-					return _servletContext.getInitParameter((String)args[0]);
-				}
-
-				return null;
-			}
-			else if (method.getName().equals("getInitParameterNames") &&
-					 (args == null)) {
-
-				return Collections.enumeration(
-					Collections.singleton("osgi.http.endpoint"));
+		public String getInitParameter(String name) {
+			if ("osgi.http.endpoint".equals(name)) {
+				return super.getInitParameter(name);
 			}
-			else if (method.getName().equals("getJspConfigDescriptor") &&
-					 JspConfigDescriptor.class.isAssignableFrom(
-						 method.getReturnType())) {
 
-				return null;
-			}
+			return null;
+		}
 
-			try {
-				return method.invoke(_servletContext, args);
-			}
-			catch (InvocationTargetException ite) {
-				throw ite.getCause();
-			}
+		@Override
+		public Enumeration<String> getInitParameterNames() {
+			return Collections.enumeration(
+				Collections.singleton("osgi.http.endpoint"));
 		}
 
-		private final ServletContext _servletContext;
+		@Override
+		public JspConfigDescriptor getJspConfigDescriptor() {
+			return null;
+		}
 
 	}
 
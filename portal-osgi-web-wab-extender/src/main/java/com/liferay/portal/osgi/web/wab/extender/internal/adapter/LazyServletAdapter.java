@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.wab.extender.internal.adapter;
+
+import com.liferay.portal.osgi.web.servlet.context.helper.definition.ServletDefinition;
+
+import java.io.IOException;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Stands in for a servlet without <code>load-on-startup</code> so that the
+ * servlet is only instantiated and initialized by the first request mapped to
+ * it. If that fails, every later request gets the same error without another
+ * attempt.
+ *
+ * @author agent
+ */
+public class LazyServletAdapter implements Servlet {
+
+	public LazyServletAdapter(
+		Bundle bundle, ServletDefinition servletDefinition) {
+
+		_bundle = bundle;
+		_servletDefinition = servletDefinition;
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (_servlet != null) {
+			_servlet.destroy();
+
+			_servlet = null;
+		}
+	}
+
+	@Override
+	public ServletConfig getServletConfig() {
+		return _servletConfig;
+	}
+
+	@Override
+	public String getServletInfo() {
+		Servlet servlet = _servlet;
+
+		if (servlet == null) {
+			return null;
+		}
+
+		return servlet.getServletInfo();
+	}
+
+	@Override
+	public void init(ServletConfig servletConfig) {
+		_servletConfig = servletConfig;
+	}
+
+	@Override
+	public void service(
+			ServletRequest servletRequest, ServletResponse servletResponse)
+		throws IOException, ServletException {
+
+		Servlet servlet = _servlet;
+
+		if (servlet == null) {
+			servlet = _initServlet();
+		}
+
+		servlet.service(servletRequest, servletResponse);
+	}
+
+	private synchronized Servlet _initServlet() throws ServletException {
+		if (_servlet != null) {
+			return _servlet;
+		}
+
+		if (_servletException != null) {
+			throw _servletException;
+		}
+
+		Thread currentThread = Thread.currentThread();
+
+		ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+		try {
+			BundleWiring bundleWiring = _bundle.adapt(BundleWiring.class);
+
+			currentThread.setContextClassLoader(bundleWiring.getClassLoader());
+
+			Servlet servlet = _servletDefinition.getServlet();
+
+			servlet.init(_servletConfig);
+
+			_servlet = servlet;
+
+			return servlet;
+		}
+		catch (ServletException se) {
+			_servletException = se;
+
+			throw se;
+		}
+		catch (Exception e) {
+			_servletException = new ServletException(
+				"Bundle " + _bundle + " is unable to load servlet " +
+					_servletDefinition.getServletClassName(),
+				e);
+
+			throw _servletException;
+		}
+		finally {
+			currentThread.setContextClassLoader(contextClassLoader);
+		}
+	}
+
+	private final Bundle _bundle;
+	private volatile Servlet _servlet;
+	private volatile ServletConfig _servletConfig;
+	private final ServletDefinition _servletDefinition;
+	private ServletException _servletException;
+
+}
@@ -22,14 +22,8 @@ import com.liferay.portal.osgi.web.servlet.context.helper.definition.WebXMLDefin
 import com.liferay.portal.osgi.web.wab.extender.internal.registration.FilterRegistrationImpl;
 import com.liferay.portal.osgi.web.wab.extender.internal.registration.ServletRegistrationImpl;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EventListener;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,7 +32,6 @@ import java.util.Map.Entry;
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterRegistration;
-import javax.servlet.Registration.Dynamic;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -53,23 +46,22 @@ import org.osgi.framework.BundleContext;
  * @author Raymond Augé
  */
 public class ModifiableServletContextAdapter
-	implements InvocationHandler, ModifiableServletContext {
+	extends ServletContextDelegate implements ModifiableServletContext {
 
 	public static ServletContext createInstance(
 		ServletContext servletContext, BundleContext bundleContext,
 		WebXMLDefinition webXMLDefinition, Logger logger) {
 
-		return (ServletContext)Proxy.newProxyInstance(
-			ModifiableServletContextAdapter.class.getClassLoader(), _INTERFACES,
-			new ModifiableServletContextAdapter(
-				servletContext, bundleContext, webXMLDefinition, logger));
+		return new ModifiableServletContextAdapter(
+			servletContext, bundleContext, webXMLDefinition, logger);
 	}
 
 	public ModifiableServletContextAdapter(
 		ServletContext servletContext, BundleContext bundleContext,
 		WebXMLDefinition webXMLDefinition, Logger logger) {
 
-		_servletContext = servletContext;
+		super(servletContext);
+
 		_bundleContext = bundleContext;
 		_webXMLDefinition = webXMLDefinition;
 		_logger = logger;
@@ -77,12 +69,14 @@ public class ModifiableServletContextAdapter
 		_bundle = _bundleContext.getBundle();
 	}
 
+	@Override
 	public FilterRegistration.Dynamic addFilter(
 		String filterName, Class<? extends Filter> filterClass) {
 
 		return addFilter(filterName, filterClass.getName());
 	}
 
+	@Override
 	public FilterRegistration.Dynamic addFilter(
 		String filterName, Filter filter) {
 
@@ -104,6 +98,7 @@ public class ModifiableServletContextAdapter
 		return filterRegistrationImpl;
 	}
 
+	@Override
 	public FilterRegistration.Dynamic addFilter(
 		String filterName, String className) {
 
@@ -122,10 +117,12 @@ public class ModifiableServletContextAdapter
 		return filterRegistrationImpl;
 	}
 
+	@Override
 	public void addListener(Class<? extends EventListener> eventListenerClass) {
 		_eventListeners.put(eventListenerClass, null);
 	}
 
+	@Override
 	public void addListener(String className) {
 		try {
 			Class<?> clazz = _bundle.loadClass(className);
@@ -148,17 +145,22 @@ public class ModifiableServletContextAdapter
 		}
 	}
 
+	@Override
 	public <T extends EventListener> void addListener(T t) {
 		_eventListeners.put(t.getClass(), t);
 	}
 
-	public Dynamic addServlet(
+	@Override
+	public ServletRegistration.Dynamic addServlet(
 		String servletName, Class<? extends Servlet> servletClass) {
 
 		return addServlet(servletName, servletClass.getName());
 	}
 
-	public Dynamic addServlet(String servletName, Servlet servlet) {
+	@Override
+	public ServletRegistration.Dynamic addServlet(
+		String servletName, Servlet servlet) {
+
 		ServletRegistrationImpl servletRegistrationImpl =
 			getServletRegistrationImpl(servletName);
 
@@ -177,7 +179,10 @@ public class ModifiableServletContextAdapter
 		return servletRegistrationImpl;
 	}
 
-	public Dynamic addServlet(String servletName, String className) {
+	@Override
+	public ServletRegistration.Dynamic addServlet(
+		String servletName, String className) {
+
 		ServletRegistrationImpl servletRegistrationImpl =
 			getServletRegistrationImpl(servletName);
 
@@ -193,6 +198,7 @@ public class ModifiableServletContextAdapter
 		return servletRegistrationImpl;
 	}
 
+	@Override
 	public <T extends Filter> T createFilter(Class<T> clazz)
 		throws ServletException {
 
@@ -207,6 +213,7 @@ public class ModifiableServletContextAdapter
 		}
 	}
 
+	@Override
 	public <T extends EventListener> T createListener(Class<T> clazz)
 		throws ServletException {
 
@@ -222,6 +229,7 @@ public class ModifiableServletContextAdapter
 		}
 	}
 
+	@Override
 	public <T extends Servlet> T createServlet(Class<T> clazz)
 		throws ServletException {
 
@@ -253,7 +261,7 @@ public class ModifiableServletContextAdapter
 				modifiableServletContext.getWrappedServletContext();
 		}
 
-		return servletContext.equals(_servletContext);
+		return servletContext.equals(getWrappedServletContext());
 	}
 
 	@Override
@@ -261,6 +269,7 @@ public class ModifiableServletContextAdapter
 		return _bundle;
 	}
 
+	@Override
 	public FilterRegistration getFilterRegistration(String filterName) {
 		return getFilterRegistrationImpl(filterName);
 	}
@@ -269,6 +278,7 @@ public class ModifiableServletContextAdapter
 		return _filterRegistrations.get(filterName);
 	}
 
+	@Override
 	public Map<String, ? extends FilterRegistration> getFilterRegistrations() {
 		return getFilterRegistrationsImpl();
 	}
@@ -319,6 +329,7 @@ public class ModifiableServletContextAdapter
 		return _eventListeners;
 	}
 
+	@Override
 	public ServletRegistration getServletRegistration(String servletName) {
 		return getServletRegistrationImpl(servletName);
 	}
@@ -329,6 +340,7 @@ public class ModifiableServletContextAdapter
 		return _servletRegistrations.get(servletName);
 	}
 
+	@Override
 	public Map<String, ? extends ServletRegistration>
 		getServletRegistrations() {
 
@@ -341,27 +353,11 @@ public class ModifiableServletContextAdapter
 		return _servletRegistrations;
 	}
 
-	@Override
-	public ServletContext getWrappedServletContext() {
-		return _servletContext;
-	}
-
 	@Override
 	public int hashCode() {
-		return _servletContext.hashCode();
-	}
-
-	@Override
-	public Object invoke(Object proxy, Method method, Object[] args)
-		throws Throwable {
-
-		Method adapterMethod = _contextAdapterMethods.get(method);
+		ServletContext servletContext = getWrappedServletContext();
 
-		if (adapterMethod != null) {
-			return adapterMethod.invoke(this, args);
-		}
-
-		return method.invoke(_servletContext, args);
+		return servletContext.hashCode();
 	}
 
 	@Override
@@ -466,8 +462,11 @@ public class ModifiableServletContextAdapter
 					servletRegistrationImpl.getInitParameters());
 				servletDefinition.setJSPFile(
 					servletRegistrationImpl.getJspFile());
+				servletDefinition.setLoadOnStartup(
+					servletRegistrationImpl.getLoadOnStartup());
 				servletDefinition.setName(servletRegistrationImpl.getName());
 				servletDefinition.setServlet(servlet);
+				servletDefinition.setServletClassName(servletClassName);
 				servletDefinition.setURLPatterns(
 					new ArrayList<>(servletRegistrationImpl.getMappings()));
 
@@ -483,67 +482,6 @@ public class ModifiableServletContextAdapter
 		}
 	}
 
-	private static Map<Method, Method> _createContextAdapterMethods() {
-		Map<Method, Method> methods = new HashMap<>();
-
-		Method[] adapterMethods =
-			ModifiableServletContextAdapter.class.getDeclaredMethods();
-
-		for (Method adapterMethod : adapterMethods) {
-			String name = adapterMethod.getName();
-			Class<?>[] parameterTypes = adapterMethod.getParameterTypes();
-
-			try {
-				Method method = ServletContext.class.getMethod(
-					name, parameterTypes);
-
-				methods.put(method, adapterMethod);
-			}
-			catch (NoSuchMethodException nsme1) {
-				try {
-					Method method = ModifiableServletContext.class.getMethod(
-						name, parameterTypes);
-
-					methods.put(method, adapterMethod);
-				}
-				catch (NoSuchMethodException nsme2) {
-				}
-			}
-		}
-
-		try {
-			Method equalsMethod = Object.class.getMethod(
-				"equals", Object.class);
-
-			Method equalsHandlerMethod =
-				ModifiableServletContextAdapter.class.getMethod(
-					"equals", Object.class);
-			methods.put(equalsMethod, equalsHandlerMethod);
-
-			Method hashCodeMethod = Object.class.getMethod(
-				"hashCode", (Class<?>[])null);
-
-			Method hashCodeHandlerMethod =
-				ModifiableServletContextAdapter.class.getMethod(
-					"hashCode", (Class<?>[])null);
-			methods.put(hashCodeMethod, hashCodeHandlerMethod);
-		}
-		catch (NoSuchMethodException nsme) {
-		}
-
-		return Collections.unmodifiableMap(methods);
-	}
-
-	private static final Class<?>[] _INTERFACES = new Class<?>[] {
-		ModifiableServletContext.class, ServletContext.class
-	};
-
-	private static final Map<Method, Method> _contextAdapterMethods;
-
-	static {
-		_contextAdapterMethods = _createContextAdapterMethods();
-	}
-
 	private final Bundle _bundle;
 	private final BundleContext _bundleContext;
 	private final LinkedHashMap<Class<? extends EventListener>, EventListener>
@@ -551,7 +489,6 @@ public class ModifiableServletContextAdapter
 	private final LinkedHashMap<String, FilterRegistrationImpl>
 		_filterRegistrations = new LinkedHashMap<>();
 	private final Logger _logger;
-	private final ServletContext _servletContext;
 	private final LinkedHashMap<String, ServletRegistrationImpl>
 		_servletRegistrations = new LinkedHashMap<>();
 	private final WebXMLDefinition _webXMLDefinition;
@@ -0,0 +1,396 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.portal.osgi.web.wab.extender.internal.adapter;
+
+import java.io.InputStream;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import java.util.Enumeration;
+import java.util.EventListener;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterRegistration;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.SessionCookieConfig;
+import javax.servlet.SessionTrackingMode;
+import javax.servlet.descriptor.JspConfigDescriptor;
+
+/**
+ * Delegates every <code>ServletContext</code> method to a wrapped servlet
+ * context. Subclasses override the methods they adapt, which keeps the calls
+ * made on every request free of reflection.
+ *
+ * @author agent
+ */
+public class ServletContextDelegate implements ServletContext {
+
+	public ServletContextDelegate(ServletContext servletContext) {
+		_servletContext = servletContext;
+	}
+
+	@Override
+	public FilterRegistration.Dynamic addFilter(
+		String filterName, Class<? extends Filter> filterClass) {
+
+		return _servletContext.addFilter(filterName, filterClass);
+	}
+
+	@Override
+	public FilterRegistration.Dynamic addFilter(
+		String filterName, Filter filter) {
+
+		return _servletContext.addFilter(filterName, filter);
+	}
+
+	@Override
+	public FilterRegistration.Dynamic addFilter(
+		String filterName, String className) {
+
+		return _servletContext.addFilter(filterName, className);
+	}
+
+	@Override
+	public void addListener(Class<? extends EventListener> eventListenerClass) {
+		_servletContext.addListener(eventListenerClass);
+	}
+
+	@Override
+	public void addListener(String className) {
+		_servletContext.addListener(className);
+	}
+
+	@Override
+	public <T extends EventListener> void addListener(T t) {
+		_servletContext.addListener(t);
+	}
+
+	@Override
+	public ServletRegistration.Dynamic addServlet(
+		String servletName, Class<? extends Servlet> servletClass) {
+
+		return _servletContext.addServlet(servletName, servletClass);
+	}
+
+	@Override
+	public ServletRegistration.Dynamic addServlet(
+		String servletName, Servlet servlet) {
+
+		return _servletContext.addServlet(servletName, servlet);
+	}
+
+	@Override
+	public ServletRegistration.Dynamic addServlet(
+		String servletName, String className) {
+
+		return _servletContext.addServlet(servletName, className);
+	}
+
+	@Override
+	public <T extends Filter> T createFilter(Class<T> clazz)
+		throws ServletException {
+
+		return _servletContext.createFilter(clazz);
+	}
+
+	@Override
+	public <T extends EventListener> T createListener(Class<T> clazz)
+		throws ServletException {
+
+		return _servletContext.createListener(clazz);
+	}
+
+	@Override
+	public <T extends Servlet> T createServlet(Class<T> clazz)
+		throws ServletException {
+
+		return _servletContext.createServlet(clazz);
+	}
+
+	@Override
+	public void declareRoles(String... roleNames) {
+		_servletContext.declareRoles(roleNames);
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return _servletContext.getAttribute(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return _servletContext.getAttributeNames();
+	}
+
+	@Override
+	public ClassLoader getClassLoader() {
+		return _servletContext.getClassLoader();
+	}
+
+	@Override
+	public ServletContext getContext(String uriPath) {
+		return _servletContext.getContext(uriPath);
+	}
+
+	@Override
+	public String getContextPath() {
+		return _servletContext.getContextPath();
+	}
+
+	@Override
+	public Set<SessionTrackingMode> getDefaultSessionTrackingModes() {
+		return _servletContext.getDefaultSessionTrackingModes();
+	}
+
+	@Override
+	public int getEffectiveMajorVersion() {
+		return _servletContext.getEffectiveMajorVersion();
+	}
+
+	@Override
+	public int getEffectiveMinorVersion() {
+		return _servletContext.getEffectiveMinorVersion();
+	}
+
+	@Override
+	public Set<SessionTrackingMode> getEffectiveSessionTrackingModes() {
+		return _servletContext.getEffectiveSessionTrackingModes();
+	}
+
+	@Override
+	public FilterRegistration getFilterRegistration(String filterName) {
+		return _servletContext.getFilterRegistration(filterName);
+	}
+
+	@Override
+	public Map<String, ? extends FilterRegistration> getFilterRegistrations() {
+		return _servletContext.getFilterRegistrations();
+	}
+
+	@Override
+	public String getInitParameter(String name) {
+		return _servletContext.getInitParameter(name);
+	}
+
+	@Override
+	public Enumeration<String> getInitParameterNames() {
+		return _servletContext.getInitParameterNames();
+	}
+
+	@Override
+	public JspConfigDescriptor getJspConfigDescriptor() {
+		return _servletContext.getJspConfigDescriptor();
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return _servletContext.getMajorVersion();
+	}
+
+	@Override
+	public String getMimeType(String file) {
+		return _servletContext.getMimeType(file);
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return _servletContext.getMinorVersion();
+	}
+
+	@Override
+	public RequestDispatcher getNamedDispatcher(String name) {
+		return _servletContext.getNamedDispatcher(name);
+	}
+
+	@Override
+	public String getRealPath(String path) {
+		return _servletContext.getRealPath(path);
+	}
+
+	@Override
+	public RequestDispatcher getRequestDispatcher(String path) {
+		return _servletContext.getRequestDispatcher(path);
+	}
+
+	@Override
+	public URL getResource(String path) throws MalformedURLException {
+		return _servletContext.getResource(path);
+	}
+
+	@Override
+	public InputStream getResourceAsStream(String path) {
+		return _servletContext.getResourceAsStream(path);
+	}
+
+	@Override
+	public Set<String> getResourcePaths(String path) {
+		return _servletContext.getResourcePaths(path);
+	}
+
+	@Override
+	public String getServerInfo() {
+		return _servletContext.getServerInfo();
+	}
+
+	/**
+	 * @deprecated As of Java Servlet API 2.1, with no direct replacement
+	 */
+	@Deprecated
+	@Override
+	public Servlet getServlet(String name) throws ServletException {
+		return _servletContext.getServlet(name);
+	}
+
+	@Override
+	public String getServletContextName() {
+		return _servletContext.getServletContextName();
+	}
+
+	/**
+	 * @deprecated As of Java Servlet API 2.1, with no direct replacement
+	 */
+	@Deprecated
+	@Override
+	public Enumeration<String> getServletNames() {
+		return _servletContext.getServletNames();
+	}
+
+	@Override
+	public ServletRegistration getServletRegistration(String servletName) {
+		return _servletContext.getServletRegistration(servletName);
+	}
+
+	@Override
+	public Map<String, ? extends ServletRegistration>
+		getServletRegistrations() {
+
+		return _servletContext.getServletRegistrations();
+	}
+
+	/**
+	 * @deprecated As of Java Servlet API 2.0, with no direct replacement
+	 */
+	@Deprecated
+	@Override
+	public Enumeration<Servlet> getServlets() {
+		return _servletContext.getServlets();
+	}
+
+	@Override
+	public SessionCookieConfig getSessionCookieConfig() {
+		return _servletContext.getSessionCookieConfig();
+	}
+
+	/**
+	 * Delegates <code>getVirtualServerName</code>, which was added by Java
+	 * Servlet API 3.1 and is missing from the API this module compiles
+	 * against, through the method of the runtime <code>ServletContext</code>
+	 * interface.
+	 */
+	public String getVirtualServerName() {
+		if (_getVirtualServerNameMethod == null) {
+			throw new UnsupportedOperationException();
+		}
+
+		try {
+			return (String)_getVirtualServerNameMethod.invoke(_servletContext);
+		}
+		catch (IllegalAccessException iae) {
+			throw new UnsupportedOperationException(iae);
+		}
+		catch (InvocationTargetException ite) {
+			Throwable cause = ite.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			throw new UnsupportedOperationException(cause);
+		}
+	}
+
+	public ServletContext getWrappedServletContext() {
+		return _servletContext;
+	}
+
+	/**
+	 * @deprecated As of Java Servlet API 2.1, replaced by {@link #log(String,
+	 *             Throwable)}
+	 */
+	@Deprecated
+	@Override
+	public void log(Exception exception, String message) {
+		_servletContext.log(exception, message);
+	}
+
+	@Override
+	public void log(String message) {
+		_servletContext.log(message);
+	}
+
+	@Override
+	public void log(String message, Throwable throwable) {
+		_servletContext.log(message, throwable);
+	}
+
+	@Override
+	public void removeAttribute(String name) {
+		_servletContext.removeAttribute(name);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		_servletContext.setAttribute(name, value);
+	}
+
+	@Override
+	public boolean setInitParameter(String name, String value) {
+		return _servletContext.setInitParameter(name, value);
+	}
+
+	@Override
+	public void setSessionTrackingModes(
+		Set<SessionTrackingMode> sessionTrackingModes) {
+
+		_servletContext.setSessionTrackingModes(sessionTrackingModes);
+	}
+
+	private static final Method _getVirtualServerNameMethod;
+
+	static {
+		Method method = null;
+
+		try {
+			method = ServletContext.class.getMethod("getVirtualServerName");
+		}
+		catch (NoSuchMethodException nsme) {
+		}
+
+		_getVirtualServerNameMethod = method;
+	}
+
+	private final ServletContext _servletContext;
+
+}
@@ -28,6 +28,27 @@ import com.liferay.portal.configuration.metatype.annotations.ExtendedObjectClass
 )
 public interface WabExtenderConfiguration {
 
+	@Meta.AD(deflt = "false", required = false)
+	public boolean asynchronousDeployment();
+
+	@Meta.AD(deflt = "0", required = false)
+	public int asynchronousDeploymentThreads();
+
+	@Meta.AD(deflt = "false", required = false)
+	public boolean lazyServletInitialization();
+
+	@Meta.AD(deflt = "false", required = false)
+	public boolean parallelServletInitialization();
+
+	@Meta.AD(deflt = "0", required = false)
+	public int parallelServletInitializationThreads();
+
+	@Meta.AD(deflt = "60000", required = false)
+	public long readinessTimeout();
+
+	@Meta.AD(deflt = "60000", required = false)
+	public long requiredWabsTimeout();
+
 	@Meta.AD(deflt = "60000", required = false)
 	public long stopTimeout();
 